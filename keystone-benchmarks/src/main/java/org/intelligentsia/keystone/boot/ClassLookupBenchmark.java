@@ -0,0 +1,200 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ClassLookupBenchmark measure class and resource lookup through {@link KeystoneClassLoader}, over 50 indexed libraries of 100
+ * classes.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassLookupBenchmark {
+
+    private static final int LIBRARIES = 50;
+    private static final int CLASSES = 100;
+
+    private File home;
+    private URL[] urls;
+    private ClassPathIndex index;
+    private KeystoneClassLoader loader;
+
+    @Setup
+    public void setUp() throws IOException {
+        home = Fixtures.directory("class-lookup");
+        final File lib = new File(home, "lib");
+        lib.mkdirs();
+        urls = new URL[ClassLookupBenchmark.LIBRARIES];
+        index = new ClassPathIndex();
+        for (int l = 0; l < ClassLookupBenchmark.LIBRARIES; l++) {
+            final File library = new File(lib, "library-" + l + ".jar");
+            Fixtures.library(library, "p" + l, ClassLookupBenchmark.CLASSES);
+            index.add(library);
+            urls[l] = library.toURI().toURL();
+        }
+        loader = new KeystoneClassLoader(urls, null, home, index);
+        Console.setInfo(Boolean.FALSE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        loader.close();
+        ExtractionManager.delete(home);
+    }
+
+    /**
+     * Find a class file of last library.
+     */
+    @Benchmark
+    public URL hit() {
+        return loader.findResource("benchmark/p49/C50.class");
+    }
+
+    /**
+     * Find a class file of last library, from four threads.
+     */
+    @Benchmark
+    @Threads(4)
+    public URL hitConcurrently() {
+        return loader.findResource("benchmark/p49/C50.class");
+    }
+
+    /**
+     * Load a class which does not exist.
+     */
+    @Benchmark
+    public Object miss() {
+        try {
+            return loader.loadClass("benchmark.missing.Missing");
+        } catch (final ClassNotFoundException exception) {
+            return exception;
+        }
+    }
+
+    /**
+     * Define all classes of a library with a new class loader.
+     */
+    @Benchmark
+    public Class<?> define(final Fresh fresh) throws ClassNotFoundException {
+        Class<?> last = null;
+        for (int c = 0; c < ClassLookupBenchmark.CLASSES; c++) {
+            last = fresh.loader.loadClass(Fixtures.className("p25", c));
+        }
+        return last;
+    }
+
+    /**
+     * Define all classes of all libraries with a new class loader, from a pool of threads.
+     */
+    @Benchmark
+    public int defineAll(final Workers workers, final Fresh fresh) throws InterruptedException, ExecutionException {
+        final List<Future<Integer>> futures = new ArrayList<>(workers.threads);
+        for (int t = 0; t < workers.threads; t++) {
+            final int offset = t;
+            futures.add(workers.executor.submit(() -> {
+                int count = 0;
+                for (int l = offset; l < ClassLookupBenchmark.LIBRARIES; l += workers.threads) {
+                    for (int c = 0; c < ClassLookupBenchmark.CLASSES; c++) {
+                        fresh.loader.loadClass(Fixtures.className("p" + l, c));
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+        int count = 0;
+        for (final Future<Integer> future : futures) {
+            count += future.get();
+        }
+        return count;
+    }
+
+    /**
+     * Class loader of define benchmarks, renewed at each invocation: other benchmarks do not pay for it.
+     */
+    @State(Scope.Thread)
+    public static class Fresh {
+
+        private KeystoneClassLoader loader;
+
+        @Setup(Level.Invocation)
+        public void setUp(final ClassLookupBenchmark benchmark) {
+            loader = new KeystoneClassLoader(benchmark.urls, null, benchmark.home, benchmark.index);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            loader.close();
+        }
+    }
+
+    /**
+     * Threads of {@link ClassLookupBenchmark#defineAll(Workers)}.
+     */
+    @State(Scope.Benchmark)
+    public static class Workers {
+
+        @Param({ "1", "4" })
+        public int threads;
+
+        private ExecutorService executor;
+
+        @Setup
+        public void setUp() {
+            executor = Executors.newFixedThreadPool(threads);
+        }
+
+        @TearDown
+        public void tearDown() {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ClassPathBenchmark measure BootStrap class path computation of a "lib" folder, with and without boot plan.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassPathBenchmark {
+
+    /**
+     * Number of libraries in "lib" folder.
+     */
+    @Param({ "10", "100", "1000" })
+    public int libraries;
+
+    private File home;
+    private BootPlan plan;
+    private final Map<String, String> arguments = new HashMap<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        home = Fixtures.directory("class-path-" + libraries);
+        final File lib = new File(home, "lib");
+        lib.mkdirs();
+        plan = new BootPlan();
+        for (int l = 0; l < libraries; l++) {
+            final String name = "library-" + l + ".jar";
+            Fixtures.library(new File(lib, name), "p" + l, 1);
+            plan.addLibrary(name);
+        }
+        Console.setInfo(Boolean.FALSE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ExtractionManager.delete(home);
+    }
+
+    /**
+     * Walk "lib" folder.
+     */
+    @Benchmark
+    public List<URL> directory() {
+        return BootStrap.computeClassPath(home, arguments, true, null);
+    }
+
+    /**
+     * Follow boot plan.
+     */
+    @Benchmark
+    public List<URL> plan() {
+        return BootStrap.computeClassPath(home, arguments, true, plan);
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ExtractionBenchmark measure {@link ExtractionManager#explode(String, File)} of generated archives.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExtractionBenchmark {
+
+    /**
+     * Number of inner jars.
+     */
+    @Param({ "10", "100", "1000" })
+    public int libraries;
+
+    /**
+     * Inner jars are stored (copied with file channel transfer) or deflated (inflated through pooled buffers).
+     */
+    @Param({ "true", "false" })
+    public boolean stored;
+
+    private File archive;
+    private File home;
+    private Map<String, String> cold;
+    private Map<String, String> cached;
+
+    @Setup
+    public void setUp() throws IOException {
+        final File directory = Fixtures.directory("extraction-" + libraries);
+        archive = new File(directory, "archive.jar");
+        Fixtures.archive(archive, libraries, 10, stored);
+        home = new File(directory, "home");
+        home.mkdirs();
+        cold = new HashMap<>();
+        cold.put("BootStrap.extractionCache", "false");
+        // lib folder is deleted outside of measure (see EmptyLib): no tombstone, no background reaper
+        cold.put("BootStrap.cleanUpLib", "false");
+        cached = new HashMap<>();
+        Console.setInfo(Boolean.FALSE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ExtractionManager.delete(archive.getParentFile());
+    }
+
+    /**
+     * Explode all inner jars in an empty lib folder.
+     */
+    @Benchmark
+    public boolean explode(final EmptyLib empty) {
+        ExtractionManager.initialize(cold);
+        return ExtractionManager.explode(archive.getPath(), home);
+    }
+
+    /**
+     * Explode an unchanged archive with extraction cache.
+     */
+    @Benchmark
+    public boolean explodeUpToDate() {
+        ExtractionManager.initialize(cached);
+        return ExtractionManager.explode(archive.getPath(), home);
+    }
+
+    /**
+     * Lib folder of explode benchmark, deleted before each invocation.
+     */
+    @State(Scope.Thread)
+    public static class EmptyLib {
+
+        @Setup(Level.Invocation)
+        public void setUp(final ExtractionBenchmark benchmark) {
+            ExtractionManager.delete(new File(benchmark.home, "lib"));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Fixtures generate archives, libraries and classes used by benchmarks.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+        super();
+    }
+
+    /**
+     * @param name name of directory
+     * @return a new empty directory under "java.io.tmpdir".
+     */
+    public static File directory(final String name) {
+        final File directory = new File(System.getProperty("java.io.tmpdir"), "keystone-benchmarks" + File.separator + name);
+        ExtractionManager.delete(directory);
+        directory.mkdirs();
+        return directory;
+    }
+
+    /**
+     * Build an archive like keystone plugin does: inner libraries are stored under "META-INF/lib".
+     *
+     * @param archive archive file
+     * @param libraries number of inner libraries
+     * @param classes number of classes of each library
+     * @return inner libraries names.
+     * @throws IOException
+     */
+    public static List<String> archive(final File archive, final int libraries, final int classes) throws IOException {
+        return Fixtures.archive(archive, libraries, classes, true);
+    }
+
+    /**
+     * Build an archive with inner libraries under "META-INF/lib".
+     *
+     * @param archive archive file
+     * @param libraries number of inner libraries
+     * @param classes number of classes of each library
+     * @param stored if true libraries are stored, as keystone plugin does, deflated otherwise
+     * @return inner libraries names.
+     * @throws IOException
+     */
+    public static List<String> archive(final File archive, final int libraries, final int classes, final boolean stored)
+            throws IOException {
+        final List<String> names = new ArrayList<>(libraries);
+        final File temp = File.createTempFile("library", ".jar");
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(archive))) {
+            for (int l = 0; l < libraries; l++) {
+                final String name = "library-" + l + ".jar";
+                Fixtures.library(temp, "p" + l, classes);
+                final byte[] content = Files.readAllBytes(temp.toPath());
+                final JarEntry entry = new JarEntry("META-INF/lib/" + name);
+                if (stored) {
+                    final CRC32 crc = new CRC32();
+                    crc.update(content);
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(content.length);
+                    entry.setCrc(crc.getValue());
+                }
+                jar.putNextEntry(entry);
+                jar.write(content);
+                jar.closeEntry();
+                names.add(name);
+            }
+        } finally {
+            temp.delete();
+        }
+        return names;
+    }
+
+    /**
+     * Build a library of empty classes "benchmark.[prefix].C[index]", with a resource "benchmark/[prefix]/resource.txt".
+     *
+     * @param library library file
+     * @param prefix package prefix
+     * @param classes number of classes
+     * @throws IOException
+     */
+    public static void library(final File library, final String prefix, final int classes) throws IOException {
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(library))) {
+            for (int c = 0; c < classes; c++) {
+                final String name = Fixtures.className(prefix, c).replace('.', '/');
+                jar.putNextEntry(new JarEntry(name + ".class"));
+                jar.write(Fixtures.classFile(name));
+                jar.closeEntry();
+            }
+            jar.putNextEntry(new JarEntry("benchmark/" + prefix + "/resource.txt"));
+            jar.write(prefix.getBytes("UTF-8"));
+            jar.closeEntry();
+        }
+    }
+
+    /**
+     * @return name of a class generated by {@link #library(File, String, int)}.
+     */
+    public static String className(final String prefix, final int index) {
+        return "benchmark." + prefix + ".C" + index;
+    }
+
+    /**
+     * @param name internal name of class, like "a/b/C"
+     * @return content of an empty public class file.
+     * @throws IOException
+     */
+    public static byte[] classFile(final String name) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(content);
+        output.writeInt(0xCAFEBABE);
+        output.writeShort(0); // minor
+        output.writeShort(50); // major (java 6, no stack map needed)
+        output.writeShort(5); // constant pool count
+        output.writeByte(7); // #1 class
+        output.writeShort(2);
+        output.writeByte(1); // #2 utf8
+        output.writeUTF(name);
+        output.writeByte(7); // #3 class
+        output.writeShort(4);
+        output.writeByte(1); // #4 utf8
+        output.writeUTF("java/lang/Object");
+        output.writeShort(0x0021); // public super
+        output.writeShort(1); // this
+        output.writeShort(3); // super
+        output.writeShort(0); // interfaces
+        output.writeShort(0); // fields
+        output.writeShort(0); // methods
+        output.writeShort(0); // attributes
+        output.flush();
+        return content.toByteArray();
+    }
+}
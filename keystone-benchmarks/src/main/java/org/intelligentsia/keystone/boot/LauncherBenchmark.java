@@ -0,0 +1,93 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LauncherBenchmark measure small launcher paths: {@link Arguments#loadArguments(String[], String)} with property files of benchmark
+ * class path, and {@link JniLoader#findLibrary(File, String)} with or without registry of native libraries.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LauncherBenchmark {
+
+    private final String[] args = { "--BootStrap.verbose=false", "--BootStrap.info=false", "application-argument" };
+    private File natives;
+
+    @Param({ "false", "true" })
+    public boolean registered;
+
+    @Setup
+    public void setUp() throws IOException {
+        natives = Fixtures.directory("natives");
+        new File(natives, System.mapLibraryName("benchmark")).createNewFile();
+        Console.setInfo(Boolean.FALSE);
+        if (registered) {
+            JniLoader.register(natives);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        JniLoader.unregister(natives);
+        ExtractionManager.delete(natives);
+    }
+
+    /**
+     * Load command line and "keystone.properties" of class path.
+     */
+    @Benchmark
+    public Map<String, String> loadArguments() throws IOException {
+        return Arguments.loadArguments(args, "keystone.properties");
+    }
+
+    @Benchmark
+    public String findLibraryHit() {
+        return JniLoader.findLibrary(natives, "benchmark");
+    }
+
+    @Benchmark
+    public String findLibraryMiss() {
+        return JniLoader.findLibrary(natives, "missing");
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * AppCds manage an application class data sharing archive (JDK 13 and later), in order to avoid parsing and verifying classes of
+ * application on each boot.
+ *
+ * A JVM cannot use a class data sharing archive which was not given on its command line: application is relaunched in a child JVM
+ * (see {@link Restarter#relaunch(List, Runnable, String...)}), and this JVM only wait for it.
+ * <ul>
+ * <li>on first launch, or when archive or JVM have changed, child dump loaded classes at exit with "-XX:ArchiveClassesAtExit" in a
+ * temporary file, which is published with an atomic rename once child has exited</li>
+ * <li>on next launches, child start with "-XX:SharedArchiveFile"</li>
+ * </ul>
+ * Class data sharing archive is {home}/keystone-{id}.jsa, where id identify archive and JVM: home directory and libraries path are the
+ * same from one launch to the other, so classes can be found in class data sharing archive. Archives of other versions are removed
+ * when a new one is dumped.
+ *
+ * When boot archive embeds a class list of a build time training run (see {@link #CLASS_LIST}) which target the running JVM
+ * specification version, archive is dumped before first launch by a short training child, which only load listed classes:
+ * application starts with its archive from the first launch, even if it is never stopped gracefully. A class list of another JVM is
+ * silently ignored.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class AppCds {
+
+    /**
+     * System property given to child JVM, with path of class data sharing archive.
+     */
+    public static final String PROPERTY = "BootStrap.cds";
+    /**
+     * System property given to training child JVM.
+     */
+    public static final String TRAINING = "BootStrap.cdsTraining";
+    /**
+     * Class list of a build time training run: one class name per line.
+     */
+    public static final String CLASS_LIST = "META-INF/keystone.classlist";
+    /**
+     * Properties of a build time training run: JVM which has run training ('java.specification.version', 'java.vm.version').
+     */
+    public static final String DESCRIPTOR = "META-INF/keystone.cds";
+
+    private static final String PREFIX = "keystone-";
+    private static final String SUFFIX = ".jsa";
+    private static final String SHARED_ARCHIVE_FILE = "-XX:SharedArchiveFile=";
+    private static final String ARCHIVE_CLASSES_AT_EXIT = "-XX:ArchiveClassesAtExit=";
+
+    private AppCds() {
+        super();
+    }
+
+    /**
+     * @param arguments arguments
+     * @return true if option "BootStrap.appCds" is set.
+     */
+    public static boolean isEnabled(final Map<String, String> arguments) {
+        return Arguments.getBooleanArgument(arguments, "BootStrap.appCds", Boolean.FALSE);
+    }
+
+    /**
+     * @return true if running JVM support dynamic class data sharing archive.
+     */
+    public static boolean isSupported() {
+        return Ergonomics.feature(System.getProperty("java.specification.version")) >= 13;
+    }
+
+    /**
+     * @return true if this JVM has been relaunched with a class data sharing option.
+     */
+    public static boolean isRelaunched() {
+        return System.getProperty(AppCds.PROPERTY) != null;
+    }
+
+    /**
+     * @return true if this JVM is a training child.
+     */
+    public static boolean isTraining() {
+        return System.getProperty(AppCds.TRAINING) != null;
+    }
+
+    /**
+     * @param option a JVM option
+     * @return true if specified option is a class data sharing option managed by this class.
+     */
+    public static boolean isOption(final String option) {
+        return option.startsWith(AppCds.SHARED_ARCHIVE_FILE) || option.startsWith(AppCds.ARCHIVE_CLASSES_AT_EXIT)
+                || option.startsWith("-D" + AppCds.PROPERTY + "=") || option.startsWith("-D" + AppCds.TRAINING + "=")
+                || option.startsWith("-Xlog:cds");
+    }
+
+    /**
+     * @param home home directory
+     * @param archive boot archive
+     * @return class data sharing archive of specified boot archive and running JVM.
+     */
+    public static File getArchive(final File home, final File archive) {
+        final String id = SharedExtraction.id(ExtractionCache.fingerprint(archive) + ":" + System.getProperty("java.home") + ":"
+                + System.getProperty("java.vm.version"));
+        return new File(home, AppCds.PREFIX + id + AppCds.SUFFIX);
+    }
+
+    /**
+     * Relaunch application in a child JVM with a class data sharing archive, if possible.
+     *
+     * @param home home directory
+     * @param location boot archive location
+     * @param args application arguments
+     * @return exit code of child JVM, or null if application must run in this JVM.
+     */
+    public static Integer relaunch(final File home, final String location, final String[] args) {
+        final File boot = new File(location);
+        if (AppCds.isRelaunched() || !AppCds.isSupported() || !boot.isFile() || !home.canWrite()) {
+            return null;
+        }
+        final File archive = AppCds.getArchive(home, boot);
+        final List<String> parameters = new ArrayList<>(Arrays.asList("-jar", boot.getPath()));
+        parameters.addAll(Arrays.asList(args));
+        try {
+            if (!archive.isFile() && AppCds.hasClassList(AppCds.class.getClassLoader())) {
+                Console.INFO("Training class data sharing archive " + archive.getPath());
+                final File dump = AppCds.temporary(home, archive);
+                Restarter.relaunch(AppCds.options(AppCds.ARCHIVE_CLASSES_AT_EXIT + dump.getPath(), home, archive, Boolean.TRUE),
+                        () -> AppCds.publish(home, dump, archive), parameters.toArray(new String[parameters.size()]));
+            }
+            if (archive.isFile()) {
+                Console.VERBOSE(() -> "Using class data sharing archive " + archive.getPath());
+                final List<String> options = AppCds.options(AppCds.SHARED_ARCHIVE_FILE + archive.getPath(), home, archive,
+                        Boolean.FALSE);
+                options.add("-Xshare:auto");
+                return Restarter.relaunch(options, null, parameters.toArray(new String[parameters.size()]));
+            }
+            Console.INFO("Dumping class data sharing archive " + archive.getPath() + " at exit");
+            final File dump = AppCds.temporary(home, archive);
+            return Restarter.relaunch(AppCds.options(AppCds.ARCHIVE_CLASSES_AT_EXIT + dump.getPath(), home, archive, Boolean.FALSE),
+                    () -> AppCds.publish(home, dump, archive), parameters.toArray(new String[parameters.size()]));
+        } catch (final IOException exception) {
+            Console.WARNING("Unable to relaunch with class data sharing archive: " + exception.getMessage(), exception);
+            return null;
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    private static List<String> options(final String archiveOption, final File home, final File archive, final boolean training) {
+        final List<String> options = new ArrayList<>();
+        options.add(archiveOption);
+        // classes which cannot be archived are expected
+        options.add("-Xlog:cds*=off");
+        options.add("-D" + AppCds.PROPERTY + "=" + archive.getPath());
+        if (training) {
+            options.add("-D" + AppCds.TRAINING + "=true");
+        }
+        if (MemoryStore.holds(home)) {
+            // child use memory home directory of this JVM, and release it
+            options.add("-D" + MemoryStore.HOME + "=" + home.getPath());
+        }
+        return options;
+    }
+
+    private static File temporary(final File home, final File archive) {
+        return new File(home,
+                archive.getName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE) + ".tmp");
+    }
+
+    /**
+     * @param loader class loader of boot archive
+     * @return true if boot archive embeds a class list of a training run on same JVM specification version.
+     */
+    static boolean hasClassList(final ClassLoader loader) {
+        final Properties descriptor = new Properties();
+        try (InputStream inputStream = loader.getResourceAsStream(AppCds.DESCRIPTOR)) {
+            if (inputStream == null) {
+                return false;
+            }
+            descriptor.load(inputStream);
+        } catch (final IOException exception) {
+            Console.VERBOSE("Unable to read " + AppCds.DESCRIPTOR, exception);
+            return false;
+        }
+        final String version = descriptor.getProperty("java.specification.version");
+        if (!System.getProperty("java.specification.version").equals(version)) {
+            Console.VERBOSE(() -> "Ignoring class list of JVM " + version);
+            return false;
+        }
+        return loader.getResource(AppCds.CLASS_LIST) != null;
+    }
+
+    /**
+     * Load and link, without initialization, all classes of embedded class list. Classes which cannot be found are ignored.
+     *
+     * @param classloader application class loader, which find class list of boot archive
+     * @return count of loaded classes
+     */
+    public static int train(final ClassLoader classloader) {
+        int count = 0;
+        try (InputStream inputStream = classloader.getResourceAsStream(AppCds.CLASS_LIST)) {
+            if (inputStream == null) {
+                return 0;
+            }
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            String name;
+            while ((name = reader.readLine()) != null) {
+                name = name.trim();
+                if (name.isEmpty() || name.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    // reflection link class without initializing it: classes which are not linked are not archived
+                    Class.forName(name, false, classloader).getDeclaredConstructors();
+                    count++;
+                } catch (final ClassNotFoundException | LinkageError exception) {
+                    // class list of another application version
+                }
+            }
+        } catch (final IOException exception) {
+            Console.WARNING("Unable to read " + AppCds.CLASS_LIST, exception);
+        }
+        final int loaded = count;
+        Console.VERBOSE(() -> loaded + " classes loaded for class data sharing archive");
+        return count;
+    }
+
+    /**
+     * Publish a dumped archive, and remove archives of other versions.
+     */
+    static void publish(final File home, final File dump, final File archive) {
+        if (!dump.isFile()) {
+            // child crashed, or already published
+            return;
+        }
+        try {
+            Files.move(dump.toPath(), archive.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException exception) {
+            Console.VERBOSE("Unable to publish " + archive.getPath(), exception);
+            dump.delete();
+            return;
+        }
+        final File[] files = home.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                final String name = file.getName();
+                // temporary dump of a live process are kept
+                if (name.startsWith(AppCds.PREFIX) && name.endsWith(AppCds.SUFFIX) && !file.equals(archive)) {
+                    Console.VERBOSE(() -> "Removing: " + name);
+                    file.delete();
+                }
+            }
+        }
+    }
+}
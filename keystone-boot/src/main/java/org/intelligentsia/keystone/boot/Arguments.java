@@ -151,7 +151,7 @@ public class Arguments {
      */
     public static Integer getIntegerArgument(final Map<String, String> args, final String name, final Integer defaultValue) {
         try {
-            return Integer.parseInt(Arguments.getStringArgument(args, name, Integer.toString(defaultValue)));
+            return Integer.parseInt(Arguments.getStringArgument(args, name, defaultValue != null ? Integer.toString(defaultValue) : null));
         } catch (final NumberFormatException exception) {
             return defaultValue;
         }
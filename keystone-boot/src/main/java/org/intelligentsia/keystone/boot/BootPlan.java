@@ -0,0 +1,212 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * BootPlan is the ordered description of what BootStrap has to load, computed by maven plugin at build time, so nothing has to be
+ * discovered by walking directories on startup.
+ *
+ * Plan is written under "META-INF/keystone.plan". Libraries and natives are path relative to "lib" folder, in class path order:
+ *
+ * <pre>
+ * Keystone-Plan-Version: 1.0
+ * Main-Class: org.intelligentsia.Main
+ * Library: application-1.0.jar
+ * Library: commons-lang-2.6.jar
+ * Native: x86/libfoo.so
+ * </pre>
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class BootPlan {
+
+    /**
+     * Plan location in archive.
+     */
+    public static final String NAME = "META-INF/keystone.plan";
+
+    private static final String HEADER = "Keystone-Plan-Version: 1.0";
+    private static final String MAIN_CLASS = "Main-Class: ";
+    private static final String LIBRARY = "Library: ";
+    private static final String NATIVE = "Native: ";
+
+    private String mainClass;
+    private final List<String> libraries = new ArrayList<>();
+    private final List<String> natives = new ArrayList<>();
+
+    /**
+     * Build a new empty BootPlan.
+     */
+    public BootPlan() {
+        super();
+    }
+
+    /**
+     * Load plan from specified class loader.
+     *
+     * @param classLoader class loader
+     * @return a plan instance or null if none is found or readable.
+     */
+    public static BootPlan load(final ClassLoader classLoader) {
+        try (InputStream input = classLoader.getResourceAsStream(BootPlan.NAME)) {
+            return input != null ? BootPlan.read(input) : null;
+        } catch (final IOException exception) {
+            Console.WARNING("Unable to read boot plan: " + exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read a plan.
+     *
+     * @param input input stream
+     * @return a plan instance.
+     * @throws IOException if an error occurs or format is not supported.
+     */
+    public static BootPlan read(final InputStream input) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        if (!BootPlan.HEADER.equals(reader.readLine())) {
+            throw new IOException("Unsupported plan format");
+        }
+        final BootPlan plan = new BootPlan();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(BootPlan.LIBRARY)) {
+                plan.addLibrary(line.substring(BootPlan.LIBRARY.length()));
+            } else if (line.startsWith(BootPlan.NATIVE)) {
+                plan.addNative(line.substring(BootPlan.NATIVE.length()));
+            } else if (line.startsWith(BootPlan.MAIN_CLASS)) {
+                plan.setMainClass(line.substring(BootPlan.MAIN_CLASS.length()));
+            } else if (!"".equals(line)) {
+                throw new IOException("Unsupported plan entry '" + line + "'");
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * @return main class name (can be null).
+     */
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    /**
+     * @param mainClass main class name
+     */
+    public void setMainClass(final String mainClass) {
+        this.mainClass = mainClass;
+    }
+
+    /**
+     * @param library path of a library, relative to "lib" folder
+     */
+    public void addLibrary(final String library) {
+        if (!libraries.contains(library)) {
+            libraries.add(library);
+        }
+    }
+
+    /**
+     * @return libraries path, in class path order.
+     */
+    public List<String> getLibraries() {
+        return Collections.unmodifiableList(libraries);
+    }
+
+    /**
+     * @param path path of a native library, relative to "lib" folder
+     */
+    public void addNative(final String path) {
+        if (!natives.contains(path)) {
+            natives.add(path);
+        }
+    }
+
+    /**
+     * @return natives libraries path.
+     */
+    public List<String> getNatives() {
+        return Collections.unmodifiableList(natives);
+    }
+
+    /**
+     * @param systemLibName system library name (see {@link System#mapLibraryName(String)})
+     * @return path of best native library with specified name for host (see {@link JniLoader#rank(String, String)}), first one on
+     *         equality, or null if none.
+     */
+    public String getNative(final String systemLibName) {
+        String best = null;
+        int rank = -1;
+        for (final String path : natives) {
+            final int candidate = JniLoader.rank(path, systemLibName);
+            if (candidate > rank) {
+                best = path;
+                rank = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param directory "lib" folder
+     * @param path relative path of a library
+     * @return file of specified library.
+     */
+    public static File resolve(final File directory, final String path) {
+        return new File(directory, path.replace('/', File.separatorChar));
+    }
+
+    /**
+     * Write this plan.
+     *
+     * @param output output stream
+     * @throws IOException if an error occurs.
+     */
+    public void write(final OutputStream output) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        writer.write(BootPlan.HEADER);
+        writer.write('\n');
+        if (mainClass != null) {
+            writer.write(BootPlan.MAIN_CLASS + mainClass + '\n');
+        }
+        for (final String library : libraries) {
+            writer.write(BootPlan.LIBRARY + library + '\n');
+        }
+        for (final String path : natives) {
+            writer.write(BootPlan.NATIVE + path + '\n');
+        }
+        writer.flush();
+    }
+}
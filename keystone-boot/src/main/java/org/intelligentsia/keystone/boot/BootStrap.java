@@ -19,22 +19,27 @@
  */
 package org.intelligentsia.keystone.boot;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.net.URLDecoder;
 import java.nio.file.Files;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.Attributes;
 
+import org.intelligentsia.keystone.boot.protocol.keystone.Handler;
+
 /**
  * BootStrap class.
  * <p>
@@ -64,7 +69,23 @@ import java.util.jar.Attributes;
  * <ul>
  * <li>BootStrap.explodeDirectory=if specified use this directory to explode inner jar libraries. Use home per default.</li>
  * <li>BootStrap.cleanUpLib=true|false (default true) clean up local 'lib' file system on startup</li>
- * <li>BootStrap.cleanUpBeforeShutdown=true|false (default true) clean up all file when system shutdown.</li>
+ * <li>BootStrap.cleanUpBeforeShutdown=true|false (default true) clean up all file when system shutdown. With extraction cache,
+ * 'lib' folder is kept when a stamp exists.</li>
+ * <li>BootStrap.cleanUpBudget=time budget in milliseconds of clean up in shutdown hook (default 500). Folders are renamed in
+ * tombstones, which are deleted in parallel within budget, and on next boot in background (see {@link Reaper}).</li>
+ * <li>BootStrap.extractionCache=true|false (default true) keep a stamp of extracted entries in 'lib' folder, in order to extract
+ * only what has changed in archive. Local 'lib' is not cleaned up on startup when a stamp exists.</li>
+ * <li>BootStrap.extractionThreads=number of threads used to explode inner jar libraries (default is number of processors)</li>
+ * <li>BootStrap.extractionMode=explode|nested|pipelined (default explode). With 'nested', inner jar libraries are not extracted:
+ * classes and resources are loaded directly from archive, and home directory can be read only. With 'pipelined', inner jar libraries are
+ * exploded in background in boot plan order (main artifact first) while main class is started: class loader waits only for the
+ * library it needs. Without boot plan, 'pipelined' is the same as 'explode'.</li>
+ * <li>BootStrap.sharedExtraction=true|false (default false) let several processes start from the same home directory: each archive
+ * version is exploded once in a staging directory and published in {home}/versions, processes coordinate with file locks, and a
+ * version is removed only when no live process use it (see {@link SharedExtraction}). Implies 'explode' mode.</li>
+ * <li>BootStrap.extractionStore=disk|memory (default disk). With 'memory', home directory is located on a memory file system
+ * ({BootStrap.memoryDirectory}/keystone-{id}, "/dev/shm" per default) if it exists and has enough space for all libraries, otherwise
+ * disk is used. Memory is released on shutdown (see {@link MemoryStore}).</li>
  * </ul>
  *
  * <p>
@@ -74,6 +95,10 @@ import java.util.jar.Attributes;
  * <li>BootStrap.verbose=true|false (default false) activate 'verbose' mode</li>
  * <li>BootStrap.info=true|false (default true) activate 'info' mode</li>
  * <li>BootStrap.logFile=log file of bootstrap (default is none)</li>
+ * <li>BootStrap.asyncLog=true|false (default true) write log lines from a background thread, flushed before entering main and on
+ * shutdown.</li>
+ * <li>BootStrap.timelineFile=JSON file where startup timeline is written before entering main (default is none). Timeline is
+ * always available in system property 'BootStrap.timeline' (see {@link Timeline}).</li>
  * </ul>
  *
  * <p>
@@ -83,7 +108,33 @@ import java.util.jar.Attributes;
  * <li>BootStrap.extraLibrariesFolderPath = folder path of external libraries , in order to include them on classpath. Even if keystone
  * is used to pack all dependencies in a single archive, many project needs adding extra dependencies on their classpath as specific
  * database driver etc...</li>
+ * <li>BootStrap.includeJavaHomeLib=true|false (default false) include archives of ${java.home}/lib on classpath.</li>
  * </ul>
+ *
+ * <p>
+ * Native libraries
+ * </p>
+ * <ul>
+ * <li>BootStrap.preloadLibraries=native libraries loaded before main class, in dependency order: stages are separated by ';', and
+ * libraries of a stage are comma separated (see {@link JniLoader#preloadLibraries(File, String)}).</li>
+ * <li>Variants of native libraries in 'lib/natives/{os}-{arch}[-{feature}]' are selected by host platform and CPU features (see
+ * {@link OSDetector#rank(String)}).</li>
+ * <li>BootStrap.nativeFilter=true|false (default true) do not explode native libraries of other OS, and variants not supported by host
+ * (see {@link JniLoader#isLoadable(String)}).</li>
+ * </ul>
+ * <p>
+ * When archive contains a boot plan (see {@link BootPlan}), class path of 'lib' folder is built in plan order without walking any
+ * directory, and plan main class is used if 'Main-Class' is not specified.
+ * </p>
+ * <p>
+ * Options of a restarted JVM are synthesized according container limits and can be overridden with 'BootStrap.jvm.*' parameters
+ * (see {@link Ergonomics}).
+ * </p>
+ * <p>
+ * With 'BootStrap.appCds=true' (JDK 13 and later), application is run by a child JVM which use a class data sharing archive of
+ * application classes, dumped on first launch (see {@link AppCds}). When boot archive embeds a class list of a build time training run
+ * on same JVM specification version, archive is dumped before first launch.
+ * </p>
  * <p>
  * JVM Specification Version can be checked with parameter: 'BootStrap.minimalJvmVersion'. If current JVM is not backward compatible,
  * the system halt.
@@ -98,17 +149,19 @@ import java.util.jar.Attributes;
  * <li>from classpath:META-INF/keystone.properties</li>
  * </ul>
  * <p>
- * BootStrap set two system properties:
+ * BootStrap set some system properties:
  * </p>
  * <ul>
  * <li>BootStrap.location=full path of the booted jar</li>
  * <li>BootStrap.home= home directory</li>
  * <li>BootStrap.keystone.version=keystone version used/li>
  * <li>BootStrap.project.version=inner project version</li>
+ * <li>BootStrap.timeline=startup timeline as JSON</li>
  * </ul>
  *
  * <p>
- * Delegated main class can manage restart of system by throw a KeystonException with "restart" or "clean" operation string".
+ * Delegated main class can manage restart of system by throw a KeystonException with "restart", "reload" or "clean" operation
+ * string".
  * </p>
  * <p>
  * Main class should be in this case:
@@ -121,6 +174,11 @@ import java.util.jar.Attributes;
  * <p>
  * An update process can set system properties "BootStrap.location" with the new jar and restart on it
  * </p>
+ * <p>
+ * With "reload" operation, system is restarted in same JVM: registered {@link Lifecycle} are stopped, BootStrap wait for application
+ * threads (at most 'BootStrap.reloadTimeout' milliseconds, default 10000), then main class is invoked again from a new class loader,
+ * on already extracted libraries, with "--BootStrap.restarted" argument.
+ * </p>
  *
  *
  * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
@@ -132,6 +190,11 @@ public final class BootStrap {
      */
     private static final String HOME_VAR = "#[home]";
 
+    /**
+     * Registered lifecycles of application.
+     */
+    private static final List<Lifecycle> LIFECYCLES = new ArrayList<>();
+
     /**
      * Main methods.
      *
@@ -139,18 +202,23 @@ public final class BootStrap {
      * @throws IOException if something is wrong when reading properties files.
      */
     public static void main(final String[] args) throws IOException {
+        final long start = System.nanoTime();
         // load startup properties
         final Map<String, String> arguments = Arguments.loadArguments(args, "keystone.properties");
+        final Timeline timeline = Timeline.initialize(arguments, start);
+        timeline.begin("arguments", start).end();
         // initialize data member according arguments
         final Boolean consoleLocationNeedHome = BootStrap.initializeConsoleLevel(arguments);
         if (!consoleLocationNeedHome) {
             // early initialization
             BootStrap.initializeConsoleLogLocation(arguments, null);
         }
-        Console.VERBOSE("Arguments " + arguments);
+        Console.VERBOSE(() -> "Arguments " + arguments);
         ExtractionManager.initialize(arguments);
+        Restarter.initialize(arguments);
 
         // JVM version checker
+        Timeline.Event event = timeline.begin("jvmCheck");
         String minimalJvmVersion = Arguments.getStringArgument(arguments, "BootStrap.minimalJvmVersion", null);
         if (minimalJvmVersion != null) {
             if (!SimpleVersion.isCompatible(minimalJvmVersion)) {
@@ -159,17 +227,29 @@ public final class BootStrap {
                 return;
             }
         }
+        event.end();
 
         // code location
+        event = timeline.begin("home");
         final String location = BootStrap.getCodeSourceLocation();
         if ((location == null) || "".equals(location)) {
             Console.WARNING("Cannot Find Code Source location");
             return;
         }
+        // zero extraction mode
+        NestedArchive archive = null;
+        if ("nested".equalsIgnoreCase(Arguments.getStringArgument(arguments, "BootStrap.extractionMode", "explode"))) {
+            try {
+                archive = NestedArchive.open(new File(location));
+            } catch (final IOException e) {
+                Console.WARNING("Unable to load libraries from archive, using explode mode: " + e.getMessage());
+            }
+        }
+
         // HOME LOCATION
         final File home;
         try {
-            home = BootStrap.getHomeDirectory(arguments, location);
+            home = BootStrap.getHomeDirectory(arguments, location, archive == null);
         } catch (final IllegalStateException e) {
             Console.WARNING(e.getMessage(), e);
             return;
@@ -179,9 +259,23 @@ public final class BootStrap {
         if (consoleLocationNeedHome) {
             BootStrap.initializeConsoleLogLocation(arguments, home);
         }
+        event.end();
+
+        // class data sharing: application is run by a child JVM
+        if (AppCds.isEnabled(arguments)) {
+            final Integer code = AppCds.relaunch(home, location, args);
+            if (code != null) {
+                System.exit(code);
+                return;
+            }
+        }
+
+        // boot plan
+        final BootPlan plan = BootPlan.load(BootStrap.class.getClassLoader());
 
         // load main class
-        final String mainClassName = Arguments.getStringArgument(arguments, Attributes.Name.MAIN_CLASS.toString(), null);
+        final String mainClassName = Arguments.getStringArgument(arguments, Attributes.Name.MAIN_CLASS.toString(),
+                plan != null ? plan.getMainClass() : null);
         // check main class
         if (mainClassName == null) {
             Console.WARNING("No Main-Class Found");
@@ -189,43 +283,62 @@ public final class BootStrap {
         }
         Console.INFO("Main-Class=" + mainClassName);
 
-        // explode inner jar
-        if (!ExtractionManager.explode(location, home)) {
-            return;
-        }
+        Extraction extraction = null;
+        // directory of exploded "lib" folder
+        File libraries = home;
+        event = timeline.begin("extraction");
+        if (archive == null) {
+            if (ExtractionManager.isShared()) {
+                // explode in a version shared with other processes
+                libraries = ExtractionManager.explodeShared(location, home);
+                if (libraries == null) {
+                    return;
+                }
+            } else if ("pipelined".equalsIgnoreCase(Arguments.getStringArgument(arguments, "BootStrap.extractionMode", "explode"))
+                    && (plan != null)) {
+                // explode inner jar in plan order, while main class is started
+                extraction = ExtractionManager.explodeInBackground(location, home, plan.getLibraries());
+                if (extraction == null) {
+                    return;
+                }
+            } else if (!ExtractionManager.explode(location, home)) {
+                // explode inner jar
+                return;
+            }
+            if (extraction == null) {
+                // native libraries lookup without file system access
+                JniLoader.register(new File(libraries, "lib"));
+            }
 
-        // add shutdown hook if necessary
-        if (Arguments.getBooleanArgument(arguments, "BootStrap.cleanUpBeforeShutdown", Boolean.TRUE)) {
-            ExtractionManager.cleanUpHook(home);
+            // add shutdown hook if necessary (memory store is always released, training child keeps libraries)
+            if (AppCds.isTraining()) {
+                Console.VERBOSE("Class data sharing training: libraries are kept");
+            } else if (MemoryStore.holds(home) || Arguments.getBooleanArgument(arguments, "BootStrap.cleanUpBeforeShutdown", Boolean.TRUE)) {
+                ExtractionManager.cleanUpHook(home);
+            }
         }
+        event.end();
 
         // computing classPath
+        event = timeline.begin("classPath");
         List<URL> urls = null;
         try {
-            urls = BootStrap.computeClassPath(home, arguments);
+            urls = BootStrap.computeClassPath(home, new File(libraries, "lib"), arguments, archive == null, plan);
         } catch (final IllegalStateException ise) {
             return;
         }
-
-        // Instantiate class loader
-        final ClassLoader classloader = new URLClassLoader(urls.toArray(new URL[urls.size()]), ClassLoader.getSystemClassLoader()) {
-
-            @Override
-            protected String findLibrary(final String libname) {
-                String libPath = JniLoader.findLibrary(new File(home, "lib"), libname);
-                if (libPath == null) {
-                    // Console.VERBOSE("Library '" + libname +
-                    // "' has not be found in embedded libraries folder.");
-                    libPath = JniLoader.findLibraryInClassPath(libname, new File(home, "lib-natives"));
-                    if (libPath == null) {
-                        // Console.VERBOSE("Library '" + libname +
-                        // "' has not be found in classpath.");
-                        return super.findLibrary(libname);
-                    }
-                }
-                return libPath;
+        event.end();
+
+        // native libraries
+        final String preloadLibraries = Arguments.getStringArgument(arguments, "BootStrap.preloadLibraries", null);
+        if ((preloadLibraries != null) && (archive == null)) {
+            event = timeline.begin("natives");
+            if (extraction != null) {
+                extraction.awaitAll();
             }
-        };
+            JniLoader.preloadLibraries(new File(libraries, "lib"), preloadLibraries);
+            event.end();
+        }
 
         // Set environment
         System.getProperties().put("BootStrap.location", location);
@@ -236,7 +349,28 @@ public final class BootStrap {
                 Arguments.getStringArgument(arguments, "BootStrap.project.version", "unknown"));
 
         // invoke main method, with original argument
-        BootStrap.invokeMain(classloader, mainClassName, args, home);
+        final URL[] classPath = urls.toArray(new URL[urls.size()]);
+        event = timeline.begin("classLoader");
+        ClassLoader classloader = BootStrap.createClassLoader(archive, classPath, libraries, plan, extraction);
+        event.end();
+        if (AppCds.isTraining()) {
+            // load classes of class list, archive is dumped at exit
+            AppCds.train(classloader);
+            return;
+        }
+        String[] mainArguments = args;
+        while (BootStrap.invokeMain(classloader, mainClassName, mainArguments, home, libraries)) {
+            // in process restart, on already extracted libraries
+            final Timeline.Event reload = timeline.begin("reload");
+            Console.INFO("Reloading");
+            BootStrap.stopApplication(classloader, Arguments.getIntegerArgument(arguments, "BootStrap.reloadTimeout", 10000));
+            if (classloader instanceof Closeable) {
+                ExtractionManager.close((Closeable) classloader);
+            }
+            classloader = BootStrap.createClassLoader(archive, classPath, libraries, plan, extraction);
+            mainArguments = BootStrap.restartedArguments(args);
+            Console.INFO("Reloaded in " + TimeUnit.NANOSECONDS.toMillis(reload.end().getDuration()) + " ms");
+        }
 
         // stop
         Console.INFO("Exit");
@@ -260,6 +394,7 @@ public final class BootStrap {
         }
         Console.setInfo(Arguments.getBooleanArgument(arguments, "BootStrap.info", Boolean.TRUE));
         Console.setVerbose(Arguments.getBooleanArgument(arguments, "BootStrap.verbose", Boolean.FALSE));
+        Console.setAsync(Arguments.getBooleanArgument(arguments, "BootStrap.asyncLog", Boolean.TRUE));
         return needHome;
     }
 
@@ -288,33 +423,62 @@ public final class BootStrap {
      *
      * @param home
      * @param arguments
+     * @param includeLib if true, include libraries of ${home}/lib
+     * @param plan boot plan (can be null)
      * @return a list of url to include in class path.
      * @throws IllegalStateException if an error occurs and should halt boot process.
      */
-    private static List<URL> computeClassPath(final File home, final Map<String, String> arguments) throws IllegalStateException {
+    static List<URL> computeClassPath(final File home, final Map<String, String> arguments, final boolean includeLib,
+            final BootPlan plan) throws IllegalStateException {
+        return BootStrap.computeClassPath(home, new File(home, "lib"), arguments, includeLib, plan);
+    }
 
-        final String javaHome = System.getProperty("java.home", null);
+    /**
+     * Compute classpath.
+     *
+     * @param home
+     * @param lib exploded "lib" folder
+     * @param arguments
+     * @param includeLib if true, include libraries of lib folder
+     * @param plan boot plan (can be null)
+     * @return a list of url to include in class path.
+     * @throws IllegalStateException if an error occurs and should halt boot process.
+     */
+    static List<URL> computeClassPath(final File home, final File lib, final Map<String, String> arguments, final boolean includeLib,
+            final BootPlan plan) throws IllegalStateException {
 
+        final FlightRecorder.Event event = FlightRecorder.CLASS_PATH.begin();
         final List<URL> urls = new ArrayList<URL>();
         // add java home
-        Console.VERBOSE("Including Java Home Libraries");
-        try {
-            if (javaHome != null) {
-                urls.addAll(BootStrap.computeFromDirectory(new File(javaHome, "lib")));
-            } else {
-                Console.WARNING("Java Home property is not set");
+        if (Arguments.getBooleanArgument(arguments, "BootStrap.includeJavaHomeLib", Boolean.FALSE)) {
+            Console.VERBOSE("Including Java Home Libraries");
+            final String javaHome = System.getProperty("java.home", null);
+            try {
+                if (javaHome != null) {
+                    urls.addAll(BootStrap.computeFromDirectory(new File(javaHome, "lib")));
+                } else {
+                    Console.WARNING("Java Home property is not set");
+                }
+            } catch (final MalformedURLException ex) {
+                Console.WARNING("error when including JavaHomeLib :" + ex.getMessage());
+                throw new IllegalStateException("error when including JavaHomeLib", ex);
             }
-        } catch (final MalformedURLException ex) {
-            Console.WARNING("error when including JavaHomeLib :" + ex.getMessage());
-            throw new IllegalStateException("error when including JavaHomeLib", ex);
         }
 
         // add ${HOME}/lib
-        try {
-            urls.addAll(BootStrap.computeFromDirectory(new File(home, "lib")));
-        } catch (final MalformedURLException ex) {
-            Console.WARNING("error when including './lib' :" + ex.getMessage());
-            throw new IllegalStateException("error when including './lib'", ex);
+        if (includeLib) {
+            try {
+                if (plan != null) {
+                    for (final String library : plan.getLibraries()) {
+                        urls.add(BootPlan.resolve(lib, library).toURI().toURL());
+                    }
+                } else {
+                    urls.addAll(BootStrap.computeFromDirectory(lib));
+                }
+            } catch (final MalformedURLException ex) {
+                Console.WARNING("error when including './lib' :" + ex.getMessage());
+                throw new IllegalStateException("error when including './lib'", ex);
+            }
         }
 
         // adding external libraries Folder
@@ -332,10 +496,107 @@ public final class BootStrap {
             }
         }
 
-        Console.VERBOSE("ClassPath: " + urls.toString());
+        Console.VERBOSE(() -> "ClassPath: " + urls.toString());
+        event.commit(urls.size());
         return urls;
     }
 
+    /**
+     * Instantiate application class loader.
+     *
+     * @param archive archive of nested mode (can be null)
+     * @param classPath class path
+     * @param home home directory
+     * @param plan boot plan (can be null)
+     * @param extraction background extraction (can be null)
+     * @return a new class loader.
+     */
+    private static ClassLoader createClassLoader(final NestedArchive archive, final URL[] classPath, final File home,
+            final BootPlan plan, final Extraction extraction) {
+        if (archive != null) {
+            Console.VERBOSE("Loading libraries from archive");
+            Handler.register();
+            return new NestedJarClassLoader(archive, classPath, ClassLoader.getSystemClassLoader(), home);
+        }
+        return new KeystoneClassLoader(classPath, ClassLoader.getSystemClassLoader(), home,
+                ClassPathIndex.load(BootStrap.class.getClassLoader()), plan, extraction);
+    }
+
+    /**
+     * Register a lifecycle of application.
+     *
+     * @param lifecycle lifecycle to register
+     */
+    public static void register(final Lifecycle lifecycle) {
+        synchronized (BootStrap.LIFECYCLES) {
+            BootStrap.LIFECYCLES.add(lifecycle);
+        }
+    }
+
+    /**
+     * Unregister a lifecycle of application.
+     *
+     * @param lifecycle lifecycle to unregister
+     */
+    public static void unregister(final Lifecycle lifecycle) {
+        synchronized (BootStrap.LIFECYCLES) {
+            BootStrap.LIFECYCLES.remove(lifecycle);
+        }
+    }
+
+    /**
+     * Stop application before an in process restart: call registered lifecycles, last registered first, and wait for application
+     * threads (non daemon threads which use specified class loader as context class loader).
+     *
+     * @param classloader application class loader
+     * @param timeout maximum time to wait application threads in milliseconds
+     */
+    private static void stopApplication(final ClassLoader classloader, final long timeout) {
+        final List<Lifecycle> lifecycles;
+        synchronized (BootStrap.LIFECYCLES) {
+            lifecycles = new ArrayList<>(BootStrap.LIFECYCLES);
+            BootStrap.LIFECYCLES.clear();
+        }
+        Collections.reverse(lifecycles);
+        for (final Lifecycle lifecycle : lifecycles) {
+            try {
+                lifecycle.stop();
+            } catch (final Throwable throwable) {
+                Console.WARNING("Error when stopping application: " + throwable.getMessage(), throwable);
+            }
+        }
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ((thread != Thread.currentThread()) && !thread.isDaemon() && (thread.getContextClassLoader() == classloader)) {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                try {
+                    if (remaining > 0) {
+                        thread.join(remaining);
+                    }
+                } catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                if (thread.isAlive()) {
+                    Console.WARNING("Application thread '" + thread.getName() + "' is still alive");
+                }
+            }
+        }
+    }
+
+    /**
+     * @param args main arguments
+     * @return main arguments with "--BootStrap.restarted".
+     */
+    private static String[] restartedArguments(final String[] args) {
+        final String restarted = "--BootStrap.restarted";
+        if (Arrays.asList(args).contains(restarted)) {
+            return args;
+        }
+        final String[] result = Arrays.copyOf(args, args.length + 1);
+        result[args.length] = restarted;
+        return result;
+    }
+
     /**
      * Invoke main class inside the specific class loader.
      *
@@ -343,10 +604,12 @@ public final class BootStrap {
      * @param mainClassName main class name
      * @param arguments arguments
      * @param home home directory
+     * @param libraries directory of exploded "lib" folder
+     * @return true if application ask an in process restart (see {@link KeystoneException.Operation#RELOAD}).
      * @throws RuntimeException from inner application
      */
-    private static void invokeMain(final ClassLoader classloader, final String mainClassName, final String[] arguments, final File home)
-            throws  RuntimeException {
+    private static boolean invokeMain(final ClassLoader classloader, final String mainClassName, final String[] arguments,
+            final File home, final File libraries) throws RuntimeException {
         // load main class
         Class<?> mainClass = null;
         try {
@@ -357,7 +620,9 @@ public final class BootStrap {
              * inside the one-jar.
              */
             Thread.currentThread().setContextClassLoader(classloader);
+            final Timeline.Event event = Timeline.get().begin("mainClass");
             mainClass = classloader.loadClass(mainClassName);
+            event.end();
         } catch (final ClassNotFoundException ex) {
             Console.WARNING("class '" + mainClassName + "' not found: " + ex.getMessage());
         }
@@ -373,35 +638,55 @@ public final class BootStrap {
             }
             if (main != null) {
                 main.setAccessible(true);
+                Timeline.get().mark("main");
+                Timeline.get().publish();
                 Console.VERBOSE("Entering main");
+                // application output follow bootstrap log
+                Console.flush();
                 try {
                     main.invoke(null, new Object[]{ arguments });
                     Console.VERBOSE("Exiting main");
                 } catch (final Throwable throwable) {
-                    processKeystoneException(home, throwable);
+                    final Throwable cause = findRootCause(throwable);
+                    if ((cause instanceof KeystoneException)
+                            && (((KeystoneException) cause).getOperation() == KeystoneException.Operation.RELOAD)) {
+                        FlightRecorder.OPERATION.commit(KeystoneException.Operation.RELOAD.name(), cause.getMessage());
+                        return true;
+                    }
+                    processKeystoneException(home, libraries, throwable);
                 }
             } else {
                 Console.WARNING("The main() method in class '" + mainClassName + "' not found.");
             }
         }
+        return false;
     }
 
     /**
      * Process Keystone Exception
      *
      * @param home home directory
+     * @param libraries directory of exploded "lib" folder ({home}/versions/{id} with shared extraction)
      * @param exception exception to check
      * @throws RuntimeException from application
      */
-    public static void processKeystoneException(final File home, final Throwable exception)  throws RuntimeException{
+    public static void processKeystoneException(final File home, final File libraries, final Throwable exception)
+            throws RuntimeException {
         Throwable throwable = findRootCause(exception);
         if (KeystoneException.class.isAssignableFrom(throwable.getClass())) {
             KeystoneException keystoneException = (KeystoneException) throwable;
+            FlightRecorder.OPERATION.commit(keystoneException.getOperation().name(), keystoneException.getMessage());
 
             // here we can add a reboot option
             switch (keystoneException.getOperation()) {
                 case CLEAN:
                     Console.VERBOSE("Cleanning before shutdown");
+                    // a shared version without stamp is stale: next process publish it again
+                    ExtractionCache.invalidate(new File(libraries, "lib"));
+                    JniLoader.unregister(new File(libraries, "lib"));
+                    if (ExtractionManager.isShared()) {
+                        SharedExtraction.release();
+                    }
                     ExtractionManager.cleanUp(home);
                     break;
                 case RESTART:
@@ -412,6 +697,9 @@ public final class BootStrap {
                         }
                     });
                     break;
+                case RELOAD:
+                    Console.WARNING("In process restart is supported only from main method");
+                    break;
                 case NONE:
                     Console.WARNING("KeystoneException without operation: " + keystoneException.getMessage(), keystoneException);
                     break;
@@ -444,7 +732,7 @@ public final class BootStrap {
     }
 
     /**
-     * Compute a list of jar file found in specified path in a recursive way.
+     * Compute a list of jar file found in specified path in a recursive way, sorted by name.
      *
      * @param directory directory path
      * @return a list of URL found in specified directory.
@@ -453,7 +741,9 @@ public final class BootStrap {
     private static List<URL> computeFromDirectory(final File directory) throws MalformedURLException {
         final List<URL> urls = new ArrayList<>();
         if (directory.exists() && directory.isDirectory()) {
-            for (final File child : directory.listFiles()) {
+            final File[] children = directory.listFiles();
+            Arrays.sort(children);
+            for (final File child : children) {
                 if (child.isDirectory()) {
                     urls.addAll(BootStrap.computeFromDirectory(new File(child.getPath())));
                 } else if (child.getName().endsWith(".jar")) {
@@ -485,10 +775,19 @@ public final class BootStrap {
      *
      * @param arguments arguments
      * @param location code location
+     * @param writable if true, home directory must be writable
      * @return home directory.
      * @throws IllegalStateException if error occurs
      */
-    private static File getHomeDirectory(final Map<String, String> arguments, final String location) throws IllegalStateException {
+    private static File getHomeDirectory(final Map<String, String> arguments, final String location, final boolean writable)
+            throws IllegalStateException {
+        // memory store, if available
+        if (writable && (location != null) && MemoryStore.isEnabled(arguments)) {
+            final File memory = MemoryStore.getHomeDirectory(arguments, location);
+            if (memory != null) {
+                return memory;
+            }
+        }
         // return explodeDirectory or location.getParent() or null
         final String path = Arguments.getStringArgument(arguments, "BootStrap.explodeDirectory", location != null ? new File(location)
                 .getParentFile().getAbsolutePath() : null);
@@ -496,7 +795,7 @@ public final class BootStrap {
             File home = path != null ? new File(path) : Files.createTempDirectory("keystone").toFile();
             ;
             // check write access
-            if (!home.canWrite()) {
+            if (writable && !home.canWrite()) {
                 Console.WARNING("Home Directory is not Writable, using a temp directory.");
                 try {
                     home = Files.createTempDirectory("keystone").toFile();
@@ -521,7 +820,7 @@ public final class BootStrap {
      * @param runnable runnable class before restarting.
      */
     public static void restart(final Runnable runnable) {
-        Console.VERBOSE("(Restart with '" + System.getProperty("BootStrap.location") + "'");
+        Console.VERBOSE(() -> "(Restart with '" + System.getProperty("BootStrap.location") + "'");
         Restarter.restartWith(runnable, "-jar ", System.getProperty("BootStrap.location"), "--BootStrap.restarted");
     }
 
@@ -0,0 +1,272 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * ClassPathIndex associate each directory (package or resource path) with the libraries which contains it.
+ *
+ * Index is written by maven plugin under "META-INF/keystone.index", with a format close to jar "INDEX.LIST":
+ *
+ * <pre>
+ * Keystone-Index-Version: 1.0
+ *
+ * library-a.jar
+ * org/intelligentsia/a
+ * META-INF/services
+ *
+ * library-b.jar
+ * /
+ * org/intelligentsia/b
+ * </pre>
+ *
+ * Root directory is written "/".
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class ClassPathIndex {
+
+    /**
+     * Index location in archive.
+     */
+    public static final String NAME = "META-INF/keystone.index";
+
+    private static final String HEADER = "Keystone-Index-Version: 1.0";
+    private static final String ROOT = "/";
+    private static final String VERSIONS = "META-INF/versions/";
+
+    /**
+     * Directories of each library, in class path order.
+     */
+    private final Map<String, Set<String>> libraries = new LinkedHashMap<>();
+    /**
+     * Libraries of each directory, in class path order.
+     */
+    private final Map<String, List<String>> directories = new HashMap<>();
+
+    /**
+     * Build a new empty ClassPathIndex.
+     */
+    public ClassPathIndex() {
+        super();
+    }
+
+    /**
+     * @param name entry name
+     * @return name of a versioned entry of a multi-release jar ("META-INF/versions/{n}/{name}") without its version prefix, or
+     *         specified name.
+     */
+    public static String unversioned(final String name) {
+        if (name.startsWith(ClassPathIndex.VERSIONS)) {
+            final int index = name.indexOf('/', ClassPathIndex.VERSIONS.length());
+            if (index > 0 && index < name.length() - 1) {
+                return name.substring(index + 1);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * @param name entry name
+     * @return version of a versioned entry of a multi-release jar ("META-INF/versions/{n}/{name}"), or 0.
+     */
+    public static int version(final String name) {
+        if (name.startsWith(ClassPathIndex.VERSIONS)) {
+            final int index = name.indexOf('/', ClassPathIndex.VERSIONS.length());
+            if (index > 0 && index < name.length() - 1) {
+                try {
+                    return Integer.parseInt(name.substring(ClassPathIndex.VERSIONS.length(), index));
+                } catch (final NumberFormatException exception) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param name entry name of a class or a resource
+     * @return directory of specified entry name, "" for root directory.
+     */
+    public static String directory(final String name) {
+        final int end = name.endsWith("/") ? name.length() - 1 : name.length();
+        final int index = name.lastIndexOf('/', end - 1);
+        return index < 0 ? "" : name.substring(0, index);
+    }
+
+    /**
+     * Load index from specified class loader.
+     *
+     * @param classLoader class loader
+     * @return an index instance or null if none is found or readable.
+     */
+    public static ClassPathIndex load(final ClassLoader classLoader) {
+        try (InputStream input = classLoader.getResourceAsStream(ClassPathIndex.NAME)) {
+            return input != null ? ClassPathIndex.read(input) : null;
+        } catch (final IOException exception) {
+            Console.WARNING("Unable to read class path index: " + exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read an index.
+     *
+     * @param input input stream
+     * @return an index instance.
+     * @throws IOException if an error occurs or format is not supported.
+     */
+    public static ClassPathIndex read(final InputStream input) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        if (!ClassPathIndex.HEADER.equals(reader.readLine())) {
+            throw new IOException("Unsupported index format");
+        }
+        final ClassPathIndex index = new ClassPathIndex();
+        String library = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if ("".equals(line)) {
+                library = null;
+            } else if (library == null) {
+                library = line;
+                index.libraries.put(library, new LinkedHashSet<String>());
+            } else {
+                index.addDirectory(library, ClassPathIndex.ROOT.equals(line) ? "" : line);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Add all entries of specified library.
+     *
+     * @param library library file
+     * @throws IOException if library is not readable.
+     */
+    public void add(final File library) throws IOException {
+        try (JarFile jar = new JarFile(library)) {
+            libraries.put(library.getName(), new LinkedHashSet<String>());
+            for (final JarEntry entry : Collections.list(jar.entries())) {
+                add(library.getName(), entry.getName());
+            }
+        }
+    }
+
+    /**
+     * Add an entry of specified library.
+     *
+     * @param library library name
+     * @param name entry name
+     */
+    public void add(final String library, final String name) {
+        if (!libraries.containsKey(library)) {
+            libraries.put(library, new LinkedHashSet<String>());
+        }
+        addDirectory(library, ClassPathIndex.directory(name));
+        // versioned entry of a multi-release jar is also found with its base name
+        addDirectory(library, ClassPathIndex.directory(ClassPathIndex.unversioned(name)));
+    }
+
+    private void addDirectory(final String library, final String directory) {
+        if (libraries.get(library).add(directory)) {
+            List<String> owners = directories.get(directory);
+            if (owners == null) {
+                owners = new ArrayList<>(1);
+                directories.put(directory, owners);
+            }
+            owners.add(library);
+        }
+    }
+
+    /**
+     * @param library library name
+     * @return true if specified library is indexed.
+     */
+    public boolean contains(final String library) {
+        return libraries.containsKey(library);
+    }
+
+    /**
+     * @return indexed libraries, in class path order.
+     */
+    public Set<String> getLibraries() {
+        return Collections.unmodifiableSet(libraries.keySet());
+    }
+
+    /**
+     * @param library library name
+     * @return directories of specified library.
+     */
+    public Set<String> getDirectories(final String library) {
+        final Set<String> result = libraries.get(library);
+        return result != null ? Collections.unmodifiableSet(result) : Collections.<String> emptySet();
+    }
+
+    /**
+     * @param directory directory
+     * @return libraries which contains specified directory, in class path order.
+     */
+    public List<String> getLibraries(final String directory) {
+        final List<String> owners = directories.get(directory);
+        return owners != null ? owners : Collections.<String> emptyList();
+    }
+
+    /**
+     * Write this index.
+     *
+     * @param output output stream
+     * @throws IOException if an error occurs.
+     */
+    public void write(final OutputStream output) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        writer.write(ClassPathIndex.HEADER);
+        writer.write('\n');
+        for (final Map.Entry<String, Set<String>> library : libraries.entrySet()) {
+            writer.write('\n');
+            writer.write(library.getKey());
+            writer.write('\n');
+            for (final String directory : library.getValue()) {
+                writer.write("".equals(directory) ? ClassPathIndex.ROOT : directory);
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+    }
+}
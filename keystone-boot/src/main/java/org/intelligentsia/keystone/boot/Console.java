@@ -24,10 +24,16 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
 import java.util.Locale;
-import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 /**
  * Console class offer an very simple way to write some log in system stream or
@@ -38,12 +44,35 @@ import java.util.TimeZone;
  * By default, this class 'log' in INFO and WARNING mode, VERBOSE is deactivated
  * and should be only used for debugging.
  *
+ * Lines are written asynchronously: they are queued in a bounded buffer which is
+ * drained by a daemon thread. When buffer is full, caller write pending lines
+ * itself. Buffer is flushed before entering application main, on
+ * {@link #flush()} and on JVM shutdown. {@link Supplier} variants build message
+ * only if level is activated.
+ *
  * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
  */
 public class Console {
 
-    private static Boolean info = Boolean.TRUE;
-    private static Boolean verbose = Boolean.FALSE;
+    /**
+     * Date of a line, milliseconds are not padded (like with SimpleDateFormat pattern 'S').
+     */
+    static final DateTimeFormatter FORMATTER = new DateTimeFormatterBuilder().appendPattern("EEE, d MMM yyyy HH:mm:ss ")
+            .appendValue(ChronoField.MILLI_OF_SECOND).appendLiteral(" GMT").toFormatter(Locale.US).withZone(ZoneOffset.UTC);
+    private static final BlockingQueue<Line> LINES = new ArrayBlockingQueue<>(1024);
+    /**
+     * Lock of writers, lines are taken from buffer only under this lock.
+     */
+    private static final Object LOCK = new Object();
+
+    private static volatile Boolean info = Boolean.TRUE;
+    private static volatile Boolean verbose = Boolean.FALSE;
+    private static volatile boolean async = true;
+    /**
+     * Stream of log file, null for system streams.
+     */
+    private static volatile PrintStream log;
+    private static volatile Thread writer;
 
     public static void setInfo(final Boolean info) {
         Console.info = info;
@@ -54,7 +83,18 @@ public class Console {
     }
 
     /**
-     * Set output in specified log file, append if ever exists.
+     * @param async if false, lines are written by caller thread.
+     */
+    public static void setAsync(final Boolean async) {
+        Console.async = async;
+        if (!async) {
+            Console.flush();
+        }
+    }
+
+    /**
+     * Set output in specified log file, append if ever exists. System streams
+     * are redirected in this file too.
      *
      * @param logFile
      *            file path.
@@ -69,16 +109,26 @@ public class Console {
                     return;
                 }
             }
-            BufferedOutputStream log = null;
+            BufferedOutputStream output = null;
             try {
-                log = new BufferedOutputStream(new FileOutputStream(logFile, true));
-                System.setOut(new PrintStream(log, true));
-                System.setErr(new PrintStream(log, true));
+                output = new BufferedOutputStream(new FileOutputStream(logFile, true));
+                // console stream is flushed by batch of lines
+                Console.setLog(new PrintStream(output, false));
+                System.setOut(new PrintStream(output, true));
+                System.setErr(new PrintStream(output, true));
             } catch (final FileNotFoundException ex) {
             }
         }
     }
 
+    /**
+     * @param stream stream of log lines, null for system streams.
+     */
+    static void setLog(final PrintStream stream) {
+        Console.flush();
+        Console.log = stream;
+    }
+
     /**
      * Basic Utility to 'log' in VERBOSE mode.
      *
@@ -88,6 +138,17 @@ public class Console {
         Console.VERBOSE(message, null);
     }
 
+    /**
+     * Basic Utility to 'log' in VERBOSE mode.
+     *
+     * @param message message supplier, called only in VERBOSE mode
+     */
+    public static void VERBOSE(final Supplier<String> message) {
+        if (Console.verbose) {
+            Console.write(new Line(false, "BootStrap", message.get(), null));
+        }
+    }
+
     /**
      * Basic Utility to 'log' in VERBOSE mode.
      *
@@ -96,10 +157,7 @@ public class Console {
      */
     public static void VERBOSE(final String message, final Throwable throwable) {
         if (Console.verbose) {
-            System.out.println(Console.getGmtDate(new Date()) + ", BootStrap: " + message);
-            if (throwable != null) {
-                throwable.printStackTrace(System.err);
-            }
+            Console.write(new Line(false, "BootStrap", message, throwable));
         }
     }
 
@@ -110,10 +168,7 @@ public class Console {
      * @param throwable
      */
     public static void WARNING(final String message, final Throwable throwable) {
-        System.err.println(Console.getGmtDate(new Date()) + ", BootStrap Warning: " + message);
-        if (throwable != null) {
-            throwable.printStackTrace(System.err);
-        }
+        Console.write(new Line(true, "BootStrap Warning", message, throwable));
     }
 
     /**
@@ -132,18 +187,112 @@ public class Console {
      */
     public static void INFO(final String message) {
         if (Console.info) {
-            System.out.println(Console.getGmtDate(new Date()) + ", BootStrap Info: " + message);
+            Console.write(new Line(false, "BootStrap Info", message, null));
+        }
+    }
+
+    /**
+     * Basic Utility to 'log' in INFO mode.
+     *
+     * @param message message supplier, called only in INFO mode
+     */
+    public static void INFO(final Supplier<String> message) {
+        if (Console.info) {
+            Console.write(new Line(false, "BootStrap Info", message.get(), null));
+        }
+    }
+
+    /**
+     * Write all pending lines.
+     */
+    public static void flush() {
+        synchronized (Console.LOCK) {
+            Line line;
+            while ((line = Console.LINES.poll()) != null) {
+                line.write();
+            }
+            Console.stream(false).flush();
+            Console.stream(true).flush();
+        }
+    }
+
+    private static void write(final Line line) {
+        if (Console.async && Console.writer() != null && Console.LINES.offer(line)) {
+            LockSupport.unpark(Console.writer);
+            return;
+        }
+        // synchronous or buffer full
+        synchronized (Console.LOCK) {
+            Console.flush();
+            line.write();
+            Console.stream(line.error).flush();
         }
     }
 
     /**
-     * @param when
-     * @return a formatted date which follow a 'GMT format' (we adds millisecond
-     *         'S')
+     * @return writer thread, started on first call, or null if it can not be started.
      */
-    private static String getGmtDate(final Date when) {
-        final SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss S", Locale.US);
-        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
-        return (dateFormat.format(when) + " GMT");
+    private static Thread writer() {
+        Thread thread = Console.writer;
+        if (thread == null) {
+            synchronized (Console.LOCK) {
+                thread = Console.writer;
+                if (thread == null && Console.async) {
+                    thread = new Thread(() -> {
+                        while (true) {
+                            Console.flush();
+                            if (Console.LINES.isEmpty()) {
+                                LockSupport.park(Console.LOCK);
+                            }
+                        }
+                    }, "keystone-console");
+                    thread.setDaemon(true);
+                    try {
+                        Runtime.getRuntime().addShutdownHook(new Thread(() -> Console.setAsync(Boolean.FALSE), "keystone-console-flush"));
+                    } catch (final IllegalStateException | SecurityException exception) {
+                        // shutting down
+                        Console.async = false;
+                        return null;
+                    }
+                    thread.start();
+                    Console.writer = thread;
+                }
+            }
+        }
+        return thread;
+    }
+
+    private static PrintStream stream(final boolean error) {
+        final PrintStream stream = Console.log;
+        return stream != null ? stream : error ? System.err : System.out;
+    }
+
+    /**
+     * Line of log, formatted when written.
+     */
+    private static final class Line {
+
+        private final long time = System.currentTimeMillis();
+        private final boolean error;
+        private final String prefix;
+        private final String message;
+        private final Throwable throwable;
+
+        Line(final boolean error, final String prefix, final String message, final Throwable throwable) {
+            this.error = error;
+            this.prefix = prefix;
+            this.message = message;
+            this.throwable = throwable;
+        }
+
+        void write() {
+            final StringBuilder builder = new StringBuilder(64 + (message != null ? message.length() : 4));
+            Console.FORMATTER.formatTo(Instant.ofEpochMilli(time), builder);
+            builder.append(", ").append(prefix).append(": ").append(message);
+            Console.stream(error).println(builder);
+            if (throwable != null) {
+                throwable.printStackTrace(Console.stream(true));
+            }
+        }
     }
 }
@@ -0,0 +1,284 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Ergonomics synthesize JVM options of a restarted JVM, according container limits and target JVM version.
+ *
+ * Limits are read from cgroup v2 ("memory.max", "cpu.max") or cgroup v1 ("memory/memory.limit_in_bytes",
+ * "cpu/cpu.cfs_quota_us" and "cpu/cpu.cfs_period_us") under "/sys/fs/cgroup". Each choice is skipped if the same option is already
+ * on command line, and can be overridden with:
+ * <ul>
+ * <li>BootStrap.jvm.maxHeap=maximum heap size (like "512m"), default is a percentage of container memory limit</li>
+ * <li>BootStrap.jvm.maxRamPercentage=percentage of container memory limit used for heap (default 75)</li>
+ * <li>BootStrap.jvm.initialHeap=initial heap size (default is none)</li>
+ * <li>BootStrap.jvm.gc=Serial|Parallel|G1|Z|Shenandoah|none, default is G1 with two processors and 1792 MB, Serial otherwise</li>
+ * <li>BootStrap.jvm.activeProcessorCount=number of processors seen by JVM, default is container CPU limit</li>
+ * <li>BootStrap.jvm.options=extra options, space separated</li>
+ * </ul>
+ * Obsolete options of a previous command line (permanent generation, CMS collector) are removed when target JVM does not support
+ * them anymore.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class Ergonomics {
+
+    /**
+     * Default cgroup file system.
+     */
+    public static final File CGROUP = new File("/sys/fs/cgroup");
+
+    /**
+     * Memory limit of cgroup v1 when unlimited is a page aligned Long.MAX_VALUE: all values above are unlimited.
+     */
+    private static final long UNLIMITED = Long.MAX_VALUE / 2;
+    private static final long MEGA = 1024L * 1024L;
+
+    private final Map<String, String> arguments;
+    private final int version;
+    private final long memoryLimit;
+    private final double cpuLimit;
+
+    /**
+     * Build a new instance of Ergonomics.
+     *
+     * @param arguments keystone arguments
+     * @param version feature version of target JVM (8, 11, 17, ...)
+     * @param memoryLimit memory limit in bytes, or -1 if unlimited
+     * @param cpuLimit CPU limit, or -1 if unlimited
+     */
+    public Ergonomics(final Map<String, String> arguments, final int version, final long memoryLimit, final double cpuLimit) {
+        super();
+        this.arguments = arguments;
+        this.version = version;
+        this.memoryLimit = memoryLimit;
+        this.cpuLimit = cpuLimit;
+    }
+
+    /**
+     * @param arguments keystone arguments
+     * @return ergonomics of current JVM and container.
+     */
+    public static Ergonomics detect(final Map<String, String> arguments) {
+        return new Ergonomics(arguments, Ergonomics.feature(System.getProperty("java.specification.version")),
+                Ergonomics.memoryLimit(Ergonomics.CGROUP), Ergonomics.cpuLimit(Ergonomics.CGROUP));
+    }
+
+    /**
+     * @param specificationVersion JVM specification version ("1.8", "11", ...)
+     * @return feature version ("8", "11", ...), or 8 if unknown.
+     */
+    public static int feature(final String specificationVersion) {
+        if (specificationVersion == null) {
+            return 8;
+        }
+        final String version = specificationVersion.startsWith("1.") ? specificationVersion.substring(2) : specificationVersion;
+        final int dot = version.indexOf('.');
+        try {
+            return Integer.parseInt(dot > 0 ? version.substring(0, dot) : version);
+        } catch (final NumberFormatException exception) {
+            return 8;
+        }
+    }
+
+    /**
+     * @param cgroup cgroup file system
+     * @return memory limit in bytes, or -1 if unlimited or unknown.
+     */
+    public static long memoryLimit(final File cgroup) {
+        String value = Ergonomics.read(new File(cgroup, "memory.max"));
+        if (value == null) {
+            value = Ergonomics.read(new File(cgroup, "memory" + File.separator + "memory.limit_in_bytes"));
+        }
+        if ((value == null) || "max".equals(value)) {
+            return -1;
+        }
+        try {
+            final long limit = Long.parseLong(value);
+            return (limit > 0) && (limit < Ergonomics.UNLIMITED) ? limit : -1;
+        } catch (final NumberFormatException exception) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param cgroup cgroup file system
+     * @return CPU limit (quota / period), or -1 if unlimited or unknown.
+     */
+    public static double cpuLimit(final File cgroup) {
+        String quota = null;
+        String period = null;
+        final String max = Ergonomics.read(new File(cgroup, "cpu.max"));
+        if (max != null) {
+            final String[] values = max.split("\\s+");
+            quota = values[0];
+            period = values.length > 1 ? values[1] : null;
+        } else {
+            for (final String controller : new String[] { "cpu", "cpu,cpuacct" }) {
+                final File directory = new File(cgroup, controller);
+                quota = Ergonomics.read(new File(directory, "cpu.cfs_quota_us"));
+                period = Ergonomics.read(new File(directory, "cpu.cfs_period_us"));
+                if (quota != null) {
+                    break;
+                }
+            }
+        }
+        if ((quota == null) || (period == null) || "max".equals(quota)) {
+            return -1;
+        }
+        try {
+            final double q = Double.parseDouble(quota);
+            final double p = Double.parseDouble(period);
+            return (q > 0) && (p > 0) ? q / p : -1;
+        } catch (final NumberFormatException exception) {
+            return -1;
+        }
+    }
+
+    /**
+     * Synthesize JVM options.
+     *
+     * @param inputArguments JVM options of current command line
+     * @return options of restarted JVM.
+     */
+    public List<String> options(final List<String> inputArguments) {
+        final List<String> options = new ArrayList<>();
+        for (final String option : inputArguments) {
+            // if it's the agent argument : we ignore it otherwise the
+            // address of the old application and the new one will be in
+            // conflict
+            if (!option.contains("-agentlib") && !isObsolete(option)) {
+                options.add(option);
+            }
+        }
+        // heap
+        final String maxHeap = Arguments.getStringArgument(arguments, "BootStrap.jvm.maxHeap", null);
+        if (!Ergonomics.contains(options, "-Xmx", "-XX:MaxHeapSize", "-XX:MaxRAMPercentage", "-XX:MaxRAM=")) {
+            if (maxHeap != null) {
+                options.add("-Xmx" + maxHeap);
+            } else if (memoryLimit > 0) {
+                final Integer percentage = Arguments.getIntegerArgument(arguments, "BootStrap.jvm.maxRamPercentage", 75);
+                if (version >= 10) {
+                    options.add("-XX:MaxRAMPercentage=" + percentage + ".0");
+                } else {
+                    options.add("-Xmx" + Math.max(16, (memoryLimit / Ergonomics.MEGA) * percentage / 100) + "m");
+                }
+            }
+        }
+        final String initialHeap = Arguments.getStringArgument(arguments, "BootStrap.jvm.initialHeap", null);
+        if ((initialHeap != null) && !Ergonomics.contains(options, "-Xms", "-XX:InitialHeapSize")) {
+            options.add("-Xms" + initialHeap);
+        }
+        // garbage collector
+        if (!Ergonomics.hasCollector(options)) {
+            final String gc = Arguments.getStringArgument(arguments, "BootStrap.jvm.gc", defaultCollector());
+            if (!"none".equalsIgnoreCase(gc)) {
+                options.add("-XX:+Use" + gc + "GC");
+            }
+        }
+        // processors
+        final Integer processors = Arguments.getIntegerArgument(arguments, "BootStrap.jvm.activeProcessorCount",
+                cpuLimit > 0 ? Integer.valueOf((int) Math.ceil(cpuLimit)) : null);
+        if ((processors != null) && (version >= 10) && !Ergonomics.contains(options, "-XX:ActiveProcessorCount")) {
+            options.add("-XX:ActiveProcessorCount=" + processors);
+        }
+        // extra options
+        final String extra = Arguments.getStringArgument(arguments, "BootStrap.jvm.options", null);
+        if (extra != null) {
+            for (final String option : extra.trim().split("\\s+")) {
+                if (!"".equals(option)) {
+                    options.add(option);
+                }
+            }
+        }
+        return options;
+    }
+
+    /**
+     * @return default garbage collector according container limits.
+     */
+    private String defaultCollector() {
+        final double processors = cpuLimit > 0 ? cpuLimit : Runtime.getRuntime().availableProcessors();
+        final long memory = memoryLimit > 0 ? memoryLimit : Long.MAX_VALUE;
+        // same threshold as JVM server class machine detection
+        return (processors >= 2) && (memory >= 1792 * Ergonomics.MEGA) ? "G1" : "Serial";
+    }
+
+    /**
+     * @param option JVM option
+     * @return true if specified option is not supported by target JVM.
+     */
+    private boolean isObsolete(final String option) {
+        if ((version >= 8) && (option.startsWith("-XX:MaxPermSize") || option.startsWith("-XX:PermSize"))) {
+            return true;
+        }
+        return (version >= 14) && (option.equals("-XX:+UseConcMarkSweepGC") || option.startsWith("-XX:CMS"));
+    }
+
+    private static boolean hasCollector(final List<String> options) {
+        for (final String option : options) {
+            if (option.startsWith("-XX:+Use") && option.endsWith("GC")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(final List<String> options, final String... prefixes) {
+        for (final String option : options) {
+            for (final String prefix : prefixes) {
+                if (option.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return trimmed first line of specified file, or null if file is not readable.
+     */
+    private static String read(final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            return lines.isEmpty() ? null : lines.get(0).trim().toLowerCase(Locale.ENGLISH);
+        } catch (final IOException exception) {
+            Console.VERBOSE("Unable to read " + file.getPath(), exception);
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Ergonomics [version=" + version + ", memoryLimit=" + memoryLimit + ", cpuLimit=" + cpuLimit + "]";
+    }
+}
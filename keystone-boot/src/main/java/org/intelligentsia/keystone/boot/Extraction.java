@@ -0,0 +1,211 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Extraction follow files of "lib" folder which are exploded in background (see
+ * {@link ExtractionManager#explodeInBackground(String, java.io.File, List)}).
+ *
+ * Files are exploded by daemon workers in scheduling order. A thread which needs a file can wait for it with {@link #await(String)}:
+ * if no worker has started it yet, file is exploded directly by the calling thread.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class Extraction {
+
+    /**
+     * Steps by target name, in scheduling order.
+     */
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final Queue<Step> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger remaining;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final Consumer<List<String>> completion;
+    private volatile boolean failed;
+
+    /**
+     * Build a new Extraction.
+     *
+     * @param tasks task of each target name, in scheduling order. A task return true if target has been exploded.
+     * @param completion called once with exploded target names when all tasks are done.
+     */
+    Extraction(final Map<String, Callable<Boolean>> tasks, final Consumer<List<String>> completion) {
+        super();
+        for (final Map.Entry<String, Callable<Boolean>> task : tasks.entrySet()) {
+            final Step step = new Step(task.getKey(), task.getValue());
+            steps.put(step.targetName, step);
+            queue.add(step);
+        }
+        this.remaining = new AtomicInteger(steps.size());
+        this.completion = completion;
+        if (steps.isEmpty()) {
+            complete();
+        }
+    }
+
+    /**
+     * @return an extraction with nothing to wait for.
+     */
+    static Extraction completed() {
+        return new Extraction(Collections.<String, Callable<Boolean>> emptyMap(), null);
+    }
+
+    /**
+     * Start specified number of daemon workers.
+     *
+     * @param threads number of workers
+     */
+    void start(final int threads) {
+        final int count = Math.min(threads, steps.size());
+        for (int i = 0; i < count; i++) {
+            final Thread worker = new Thread(() -> {
+                Step step;
+                while ((step = queue.poll()) != null) {
+                    step.run();
+                }
+            }, "keystone-extraction-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Wait until specified target is exploded. Target is exploded by calling thread if no worker has started it.
+     *
+     * @param targetName name relative to "lib" folder
+     * @return true if target is available, false if its extraction failed.
+     */
+    public boolean await(final String targetName) {
+        final Step step = steps.get(targetName);
+        if ((step == null) || (step.done.getCount() == 0)) {
+            return (step == null) || step.success;
+        }
+        if (!step.run()) {
+            Console.VERBOSE(() -> "Waiting for " + targetName);
+            Extraction.await(step.done);
+        }
+        return step.success;
+    }
+
+    /**
+     * Wait until all targets are exploded.
+     *
+     * @return true if all targets are available.
+     */
+    public boolean awaitAll() {
+        Extraction.await(done);
+        return !failed;
+    }
+
+    /**
+     * @return true if all targets are exploded.
+     */
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    private void complete() {
+        try {
+            if (completion != null) {
+                final List<String> exploded = new ArrayList<>(steps.size());
+                for (final Step step : steps.values()) {
+                    if (step.success) {
+                        exploded.add(step.targetName);
+                    }
+                }
+                completion.accept(exploded);
+            }
+        } catch (final RuntimeException exception) {
+            failed = true;
+            Console.WARNING("Error when ending extraction: " + exception.getMessage(), exception);
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private static void await(final CountDownLatch latch) {
+        boolean interrupted = false;
+        while (latch.getCount() > 0) {
+            try {
+                latch.await();
+            } catch (final InterruptedException exception) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Extraction of a single target.
+     */
+    private final class Step {
+
+        private final String targetName;
+        private final Callable<Boolean> task;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean success;
+
+        private Step(final String targetName, final Callable<Boolean> task) {
+            this.targetName = targetName;
+            this.task = task;
+        }
+
+        /**
+         * Run this step if nobody has claimed it.
+         *
+         * @return true if this step has been run by calling thread.
+         */
+        private boolean run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            try {
+                success = task.call();
+            } catch (final Exception exception) {
+                Console.WARNING("Error when exploding " + targetName + ": " + exception.getMessage(), exception);
+            } finally {
+                if (!success) {
+                    failed = true;
+                }
+                done.countDown();
+                if (remaining.decrementAndGet() == 0) {
+                    complete();
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.jar.JarEntry;
+
+/**
+ * ExtractionCache keep track of what has been extracted in {home}/lib.
+ *
+ * A stamp file is written at the end of a successful extraction. It contains the fingerprint of the outer archive and, for each
+ * extracted entry, its size and CRC as found in the archive, and last modification time of extracted file. On next boot:
+ * <ul>
+ * <li>if the fingerprint match, nothing has to be extracted</li>
+ * <li>otherwise, only entries with a different size or CRC, or whose file has been modified since extraction, are extracted again,
+ * and entries which are no more in archive are removed</li>
+ * </ul>
+ * During extraction, each verified entry is appended to a journal file: if extraction is interrupted, next boot reuse entries of
+ * journal and extract only the others. Extracted files are never read again to be checked.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class ExtractionCache {
+
+    /**
+     * Stamp file name, located in {home}/lib.
+     */
+    public static final String STAMP = ".keystone-stamp";
+    /**
+     * Journal file name, located in {home}/lib.
+     */
+    public static final String JOURNAL = ".keystone-journal";
+
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String ENTRY = "entry.";
+
+    /**
+     * Fingerprint of archive.
+     */
+    private final String fingerprint;
+    /**
+     * Extracted entries: target name, size, crc and last modification time.
+     */
+    private final Map<String, String> entries;
+    /**
+     * Journal of registered entries (can be null).
+     */
+    private Writer journal;
+
+    /**
+     * Build a new empty instance of ExtractionCache.
+     *
+     * @param fingerprint archive fingerprint
+     */
+    public ExtractionCache(final String fingerprint) {
+        this(fingerprint, new HashMap<String, String>());
+    }
+
+    private ExtractionCache(final String fingerprint, final Map<String, String> entries) {
+        super();
+        this.fingerprint = fingerprint;
+        this.entries = entries;
+    }
+
+    /**
+     * Compute fingerprint of specified archive. We did not read archive content, path, size and last modification time is enough.
+     *
+     * @param archive archive file
+     * @return fingerprint of archive.
+     */
+    public static String fingerprint(final File archive) {
+        return archive.getAbsolutePath() + ":" + archive.length() + ":" + archive.lastModified();
+    }
+
+    /**
+     * @param lib library directory
+     * @return true if a stamp file, or a journal of an interrupted extraction, exists in specified directory.
+     */
+    public static boolean exists(final File lib) {
+        return new File(lib, ExtractionCache.STAMP).isFile() || new File(lib, ExtractionCache.JOURNAL).isFile();
+    }
+
+    /**
+     * Load stamp file of specified library directory, or journal of an interrupted extraction if there is no stamp.
+     *
+     * @param lib library directory
+     * @return an ExtractionCache instance or null if stamp did not exists or is not readable. A cache loaded from a journal is never up
+     *         to date.
+     */
+    public static ExtractionCache load(final File lib) {
+        final File stamp = new File(lib, ExtractionCache.STAMP);
+        if (!stamp.isFile()) {
+            return ExtractionCache.loadJournal(lib);
+        }
+        final Properties properties = new Properties();
+        try (InputStream is = new FileInputStream(stamp)) {
+            properties.load(is);
+        } catch (final IOException exception) {
+            Console.VERBOSE("Unable to read extraction stamp", exception);
+            return null;
+        }
+        final Map<String, String> entries = new HashMap<>();
+        for (final String key : properties.stringPropertyNames()) {
+            if (key.startsWith(ExtractionCache.ENTRY)) {
+                entries.put(key.substring(ExtractionCache.ENTRY.length()), properties.getProperty(key));
+            }
+        }
+        return new ExtractionCache(properties.getProperty(ExtractionCache.FINGERPRINT, ""), entries);
+    }
+
+    private static ExtractionCache loadJournal(final File lib) {
+        final File journal = new File(lib, ExtractionCache.JOURNAL);
+        if (!journal.isFile()) {
+            return null;
+        }
+        final Map<String, String> entries = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(journal.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separator = line.indexOf(' ');
+                if (separator > 0) {
+                    entries.put(line.substring(separator + 1), line.substring(0, separator));
+                }
+            }
+        } catch (final IOException exception) {
+            Console.VERBOSE("Unable to read extraction journal", exception);
+            return null;
+        }
+        Console.VERBOSE(() -> "Resume interrupted extraction (" + entries.size() + " entries)");
+        return new ExtractionCache("", entries);
+    }
+
+    /**
+     * Remove stamp file of specified library directory.
+     *
+     * @param lib library directory
+     */
+    public static void invalidate(final File lib) {
+        final File stamp = new File(lib, ExtractionCache.STAMP);
+        if (stamp.exists() && !stamp.delete()) {
+            Console.WARNING("Unable to delete extraction stamp " + stamp.getPath());
+        }
+    }
+
+    /**
+     * @param fingerprint archive fingerprint
+     * @return true if this cache has been made with the same archive.
+     */
+    public boolean isUpToDate(final String fingerprint) {
+        return this.fingerprint.equals(fingerprint);
+    }
+
+    /**
+     * @param targetName target name
+     * @param entry archive entry
+     * @param localFile extracted file
+     * @return true if local file has been extracted from an entry with same size and CRC.
+     */
+    public synchronized boolean isFresh(final String targetName, final JarEntry entry, final File localFile) {
+        final String record = entries.get(targetName);
+        final String signature = ExtractionCache.signature(entry);
+        if ((record == null) || !record.startsWith(signature)) {
+            return false;
+        }
+        if (entry.isDirectory()) {
+            return localFile.isDirectory();
+        }
+        // stamp of previous version did not record modification time
+        return localFile.isFile() && (localFile.length() == entry.getSize())
+                && ((record.length() == signature.length()) || record.equals(signature + ":" + localFile.lastModified()));
+    }
+
+    /**
+     * Register an extracted directory.
+     *
+     * @param targetName target name
+     * @param entry archive entry
+     */
+    public void put(final String targetName, final JarEntry entry) {
+        put(targetName, ExtractionCache.signature(entry));
+    }
+
+    /**
+     * Register an extracted file, which has been verified against entry size and CRC.
+     *
+     * @param targetName target name
+     * @param entry archive entry
+     * @param localFile extracted file
+     */
+    public void put(final String targetName, final JarEntry entry, final File localFile) {
+        put(targetName, ExtractionCache.signature(entry) + ":" + localFile.lastModified());
+    }
+
+    private synchronized void put(final String targetName, final String record) {
+        entries.put(targetName, record);
+        if (journal != null) {
+            try {
+                journal.write(record);
+                journal.write(' ');
+                journal.write(targetName);
+                journal.write('\n');
+                journal.flush();
+            } catch (final IOException exception) {
+                Console.VERBOSE("Unable to write extraction journal", exception);
+                ExtractionManager.close(journal);
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * Start a new journal in specified library directory: each registered entry is appended.
+     *
+     * @param lib library directory
+     * @throws IOException if journal cannot be created
+     */
+    public synchronized void journal(final File lib) throws IOException {
+        Files.createDirectories(lib.toPath());
+        journal = Files.newBufferedWriter(new File(lib, ExtractionCache.JOURNAL).toPath(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param targetName target name
+     * @return true if specified target name is registered.
+     */
+    public synchronized boolean contains(final String targetName) {
+        return entries.containsKey(targetName);
+    }
+
+    /**
+     * @return a set of all registered target name.
+     */
+    public synchronized Set<String> getTargetNames() {
+        return new HashSet<>(entries.keySet());
+    }
+
+    /**
+     * Write stamp file in specified library directory, and remove journal.
+     *
+     * @param lib library directory
+     * @throws IOException if an error occurs
+     */
+    public synchronized void store(final File lib) throws IOException {
+        final Properties properties = new Properties();
+        properties.put(ExtractionCache.FINGERPRINT, fingerprint);
+        for (final Map.Entry<String, String> entry : entries.entrySet()) {
+            properties.put(ExtractionCache.ENTRY + entry.getKey(), entry.getValue());
+        }
+        final File stamp = new File(lib, ExtractionCache.STAMP);
+        final File temp = new File(lib, ExtractionCache.STAMP + ".tmp");
+        try (OutputStream os = new FileOutputStream(temp)) {
+            properties.store(os, "Keystone extraction stamp");
+        }
+        Files.move(temp.toPath(), stamp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        ExtractionManager.close(journal);
+        journal = null;
+        Files.deleteIfExists(new File(lib, ExtractionCache.JOURNAL).toPath());
+    }
+
+    private static String signature(final JarEntry entry) {
+        return entry.getSize() + ":" + Long.toHexString(entry.getCrc());
+    }
+}
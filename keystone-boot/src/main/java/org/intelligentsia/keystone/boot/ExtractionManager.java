@@ -27,15 +27,29 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.CopyOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 
 /**
@@ -52,21 +66,49 @@ import java.util.zip.ZipException;
  */
 public class ExtractionManager {
 
+    /**
+     * Places where libraries are located inside archive, first one has priority.
+     * WARN here it's "lib/" for all OS (we're looking inside a jar, not on file system).
+     */
+    private static final String[] PLACES = { "META-INF/lib/", // the good place
+            "lib/" // the old bad place
+    };
+
     private static Boolean cleanUpLib = Boolean.TRUE;
+    private static Boolean extractionCache = Boolean.TRUE;
+    private static Integer extractionThreads = Runtime.getRuntime().availableProcessors();
+    private static Boolean sharedExtraction = Boolean.FALSE;
+    private static Long cleanUpBudget = 500L;
+    private static Boolean nativeFilter = Boolean.TRUE;
     private static Boolean hookAdded = Boolean.FALSE;
 
     /**
-     * Initialize clean up directive.
+     * Initialize clean up, cache and concurrency directive.
      *
      * @param arguments
      */
     public static void initialize(final Map<String, String> arguments) {
         ExtractionManager.cleanUpLib = Arguments.getBooleanArgument(arguments, "BootStrap.cleanUpLib", Boolean.TRUE);
+        ExtractionManager.extractionCache = Arguments.getBooleanArgument(arguments, "BootStrap.extractionCache", Boolean.TRUE);
+        ExtractionManager.extractionThreads = Math.max(1,
+                Arguments.getIntegerArgument(arguments, "BootStrap.extractionThreads", Runtime.getRuntime().availableProcessors()));
+        ExtractionManager.sharedExtraction = Arguments.getBooleanArgument(arguments, "BootStrap.sharedExtraction", Boolean.FALSE);
+        ExtractionManager.cleanUpBudget = Arguments.getIntegerArgument(arguments, "BootStrap.cleanUpBudget", 500).longValue();
+        ExtractionManager.nativeFilter = Arguments.getBooleanArgument(arguments, "BootStrap.nativeFilter", Boolean.TRUE);
+    }
+
+    /**
+     * @return true if libraries are exploded in versions shared by several processes (see {@link SharedExtraction}).
+     */
+    public static boolean isShared() {
+        return ExtractionManager.sharedExtraction;
     }
 
     /**
      * Explode libraries and make a clean before if necessary.
      *
+     * If extraction cache is enabled, only entries which have changed since last extraction are exploded.
+     *
      * @param location
      *            inner jar location
      * @param home
@@ -78,12 +120,26 @@ public class ExtractionManager {
         // Explode inner jar
         try {
             if (location != null) {
-                // WARN here it's "lib/" for all OS (we're looking inside a jar,
-                // not on file system).
-                // the good place
-                ExtractionManager.explode(new File(home, "lib"), "META-INF/lib/", location, Boolean.FALSE);
-                // the old bad place
-                ExtractionManager.explode(new File(home, "lib"), "lib/", location, Boolean.FALSE);
+                final File lib = new File(home, "lib");
+                final File archive = new File(location);
+                ExtractionCache previous = null;
+                ExtractionCache current = null;
+                if (ExtractionManager.extractionCache && archive.isFile()) {
+                    final String fingerprint = ExtractionCache.fingerprint(archive);
+                    previous = ExtractionCache.load(lib);
+                    if ((previous != null) && previous.isUpToDate(fingerprint)) {
+                        Console.VERBOSE("Extraction cache is up to date");
+                        return true;
+                    }
+                    // stamp will be written again at end
+                    ExtractionCache.invalidate(lib);
+                    current = new ExtractionCache(fingerprint);
+                    current.journal(lib);
+                }
+                ExtractionManager.explode(lib, location, previous, lib, current);
+                if (current != null) {
+                    ExtractionManager.end(lib, previous, current);
+                }
             } else {
                 Console.WARNING("Error when exploding : Location is null");
             }
@@ -94,6 +150,195 @@ public class ExtractionManager {
         return true;
     }
 
+    /**
+     * Explode libraries in background and make a clean before if necessary.
+     *
+     * Files are exploded by "BootStrap.extractionThreads" daemon workers: specified priorities first, in order, then largest
+     * first. Extraction stamp is written once all files are exploded.
+     *
+     * @param location
+     *            inner jar location
+     * @param home
+     *            home directory to explode
+     * @param priorities
+     *            name of files (relative to "lib" folder) to explode first
+     * @return an extraction to wait for files, or null if an error occur.
+     */
+    public static Extraction explodeInBackground(final String location, final File home, final List<String> priorities) {
+        if ((location == null) || !new File(location).isFile()) {
+            // nothing to pipeline
+            return ExtractionManager.explode(location, home) ? Extraction.completed() : null;
+        }
+        ExtractionManager.cleanUp(home);
+        try {
+            final File lib = new File(home, "lib");
+            final File archive = new File(location);
+            ExtractionCache previous = null;
+            ExtractionCache current = null;
+            if (ExtractionManager.extractionCache) {
+                final String fingerprint = ExtractionCache.fingerprint(archive);
+                previous = ExtractionCache.load(lib);
+                if ((previous != null) && previous.isUpToDate(fingerprint)) {
+                    Console.VERBOSE("Extraction cache is up to date");
+                    return Extraction.completed();
+                }
+                ExtractionCache.invalidate(lib);
+                current = new ExtractionCache(fingerprint);
+                current.journal(lib);
+            }
+            final Source source = Source.open(location);
+            final List<Target> files;
+            try {
+                files = ExtractionManager.select(lib, source, previous, lib, current);
+            } catch (final IOException exception) {
+                ExtractionManager.close(source);
+                throw exception;
+            }
+            // priorities first, then largest first
+            Collections.sort(files, (o1, o2) -> {
+                final int p1 = ExtractionManager.rank(priorities, o1.targetName);
+                final int p2 = ExtractionManager.rank(priorities, o2.targetName);
+                return p1 != p2 ? Integer.compare(p1, p2) : Long.compare(o2.entry.getSize(), o1.entry.getSize());
+            });
+            final ExtractionCache last = previous;
+            final ExtractionCache stamp = current;
+            final Map<String, Callable<Boolean>> tasks = new LinkedHashMap<>();
+            for (final Target target : files) {
+                tasks.put(target.targetName, () -> explodeTarget(lib, source, target, stamp));
+            }
+            final Extraction extraction = new Extraction(tasks, exploded -> {
+                ExtractionManager.close(source);
+                if (stamp != null) {
+                    try {
+                        ExtractionManager.end(lib, last, stamp);
+                    } catch (final IOException exception) {
+                        Console.WARNING("Unable to store extraction stamp: " + exception.getMessage(), exception);
+                    }
+                }
+                JniLoader.register(lib);
+            });
+            extraction.start(ExtractionManager.extractionThreads);
+            return extraction;
+        } catch (final Throwable t) {
+            Console.WARNING("Error when exploding : " + t.getMessage(), t);
+            return null;
+        }
+    }
+
+    /**
+     * Explode libraries in a version shared with other processes (see {@link SharedExtraction}), and remove unused versions if
+     * necessary.
+     *
+     * @param location
+     *            inner jar location
+     * @param home
+     *            home directory
+     * @return directory which contains exploded "lib" folder, or null if an error occur.
+     */
+    public static File explodeShared(final String location, final File home) {
+        if ((location == null) || !new File(location).isFile()) {
+            // nothing to share
+            return ExtractionManager.explode(location, home) ? home : null;
+        }
+        try {
+            final String fingerprint = ExtractionCache.fingerprint(new File(location));
+            final File version = SharedExtraction.publish(home, fingerprint, (lib, last) -> {
+                // unchanged files of last version are hard linked, only changes are exploded
+                final ExtractionCache previous = last != null ? ExtractionCache.load(last) : null;
+                final ExtractionCache current = new ExtractionCache(fingerprint);
+                ExtractionManager.explode(lib, location, previous, previous != null ? last : lib, current);
+                current.store(lib);
+            });
+            if (ExtractionManager.cleanUpLib) {
+                SharedExtraction.reap(home);
+            }
+            return version;
+        } catch (final Throwable t) {
+            Console.WARNING("Error when exploding : " + t.getMessage(), t);
+            return null;
+        }
+    }
+
+    /**
+     * @return position of specified target name in priorities, or max value if none.
+     */
+    private static int rank(final List<String> priorities, final String targetName) {
+        final int index = priorities != null ? priorities.indexOf(targetName) : -1;
+        return index < 0 ? Integer.MAX_VALUE : index;
+    }
+
+    /**
+     * Hard link a file of a previous extraction (or create a directory).
+     *
+     * @param last file of previous extraction
+     * @param localFile file to create
+     * @return true if local file has been created, false if it must be exploded.
+     */
+    private static boolean link(final File last, final File localFile) {
+        try {
+            if (last.isDirectory()) {
+                Files.createDirectories(localFile.toPath());
+            } else {
+                Files.createDirectories(localFile.getParentFile().toPath());
+                Files.createLink(localFile.toPath(), last.toPath());
+            }
+            Console.VERBOSE(() -> "Linked: " + localFile.getName());
+            return true;
+        } catch (final IOException | UnsupportedOperationException | SecurityException exception) {
+            // file system without hard link, or last version removed meanwhile
+            Console.VERBOSE(() -> "Unable to link " + last.getPath() + ": " + exception.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Compute space needed to explode all libraries of an archive, from its central directory.
+     *
+     * @param location archive location
+     * @return uncompressed size of all libraries in bytes.
+     * @throws IOException if archive cannot be read
+     */
+    public static long getRequiredSpace(final String location) throws IOException {
+        long required = 0;
+        try (JarFile jar = new JarFile(location)) {
+            for (final JarEntry entry : Collections.list(jar.entries())) {
+                final Target target = Target.route(entry);
+                if ((target != null) && ExtractionManager.isLoadable(target) && (entry.getSize() > 0)) {
+                    required += entry.getSize();
+                }
+            }
+        }
+        return required;
+    }
+
+    /**
+     * @return false if target is a native library (or variant) which can not be loaded on host, and "BootStrap.nativeFilter" is set.
+     */
+    private static boolean isLoadable(final Target target) {
+        return !ExtractionManager.nativeFilter || JniLoader.isLoadable(target.targetName);
+    }
+
+    /**
+     * Remove entries which are no more in archive and store extraction stamp.
+     *
+     * @param lib
+     * @param previous extraction cache of last extraction (can be null)
+     * @param current extraction cache of this extraction
+     * @throws IOException if stamp cannot be stored
+     */
+    private static void end(final File lib, final ExtractionCache previous, final ExtractionCache current) throws IOException {
+        // remove entries which are no more in archive
+        if (previous != null) {
+            for (final String targetName : previous.getTargetNames()) {
+                if (!current.contains(targetName)) {
+                    Console.VERBOSE(() -> "Removing: " + targetName);
+                    ExtractionManager.delete(new File(lib, targetName));
+                }
+            }
+        }
+        current.store(lib);
+    }
+
     /**
      * Utility to clean up home.
      *
@@ -110,36 +355,68 @@ public class ExtractionManager {
      * @param home
      *            directory to clean
      * @param force
-     *            if true try to clean all sub directory.
+     *            if true try to clean all sub directory, even if an extraction stamp exists. With shared extraction, only versions
+     *            which are not used by a live process are removed.
      */
     public static void cleanUp(final File home, final Boolean force) {
-        if (ExtractionManager.cleanUpLib || force) {
-            Console.VERBOSE("Clean up lib");
+        if (ExtractionManager.sharedExtraction) {
+            // versions used by a live process are kept
+            SharedExtraction.reap(home);
+        } else if (ExtractionManager.cleanUpLib || force) {
             final File lib = new File(home, "lib");
-            if (lib.exists()) {
-                if (!ExtractionManager.delete(lib)) {
+            if (!force && ExtractionManager.extractionCache && ExtractionCache.exists(lib)) {
+                Console.VERBOSE("Keep lib, extraction stamp found");
+            } else if (lib.exists()) {
+                Console.VERBOSE("Clean up lib");
+                if (Reaper.bury(home, lib) == null && !ExtractionManager.delete(lib)) {
                     Console.WARNING("Unable to Clean up lib folder");
                 }
             }
         }
+        // tombstones of this or previous run
+        Reaper.reapInBackground(home, ExtractionManager.extractionThreads);
     }
 
     /**
      * Add a shutdown hook to clean up at end.
+     *
+     * Folder "lib" is renamed in a tombstone, which is deleted within "BootStrap.cleanUpBudget" milliseconds: what remains is
+     * deleted on next boot (see {@link Reaper}). With extraction cache, folder "lib" is kept when an extraction stamp exists, so next
+     * launch extract nothing if archive has not changed.
+     *
      * @param home
      */
     public static void cleanUpHook(final File home) {
         if (!hookAdded) {
-            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                final File lib = new File(home, "lib");
-                if (lib.exists()) {
-                    ExtractionManager.delete(lib);
-                }
-            }));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> ExtractionManager.cleanUpAtShutdown(home), "keystone-cleanup"));
             hookAdded = Boolean.TRUE;
         }
     }
 
+    /**
+     * Clean up of shutdown hook.
+     *
+     * @param home
+     */
+    static void cleanUpAtShutdown(final File home) {
+        if (MemoryStore.holds(home)) {
+            // release memory, whatever budget is
+            MemoryStore.release(home, ExtractionManager.sharedExtraction, ExtractionManager.extractionThreads);
+            return;
+        }
+        if (ExtractionManager.sharedExtraction) {
+            SharedExtraction.release();
+            SharedExtraction.reap(home);
+        } else {
+            final File lib = new File(home, "lib");
+            if (ExtractionManager.extractionCache && ExtractionCache.exists(lib)) {
+                Console.VERBOSE("Keep lib, extraction stamp found");
+            } else if (lib.exists() && Reaper.bury(home, lib) == null) {
+                Reaper.delete(Collections.singletonList(lib), ExtractionManager.extractionThreads, ExtractionManager.cleanUpBudget);
+            }
+        }
+        Reaper.reap(home, ExtractionManager.extractionThreads, ExtractionManager.cleanUpBudget);
+    }
 
     /**
      * Utility to close in silence.
@@ -181,36 +458,166 @@ public class ExtractionManager {
     /**
      * Explode specified jar into home.
      *
+     * Archive entries are read once and routed to their target, then files are exploded on a pool of
+     * "BootStrap.extractionThreads" workers, largest first.
+     *
      * @param home
-     * @param fromPath
      * @param jarPath
+     * @param previous extraction cache of last extraction (can be null)
+     * @param origin directory of last extraction: home, or another directory from which unchanged files are hard linked
+     * @param current extraction cache to feed (can be null)
      * @throws IOException
      * @throws ZipException
      */
-    private static void explode(final File home, final String fromPath, final String jarPath, final Boolean override) throws IOException, ZipException {
+    private static void explode(final File home, final String jarPath, final ExtractionCache previous, final File origin,
+            final ExtractionCache current) throws IOException, ZipException {
         // check if jarPath if a jar file. With local test case, it's a folder.
         final File check = new File(jarPath);
         if (check.exists() && !check.isDirectory()) {
-            final JarFile jar = new JarFile(URLDecoder.decode(jarPath, "UTF-8"));
-            for (final JarEntry entry : Collections.list(jar.entries())) {
-                final String name = entry.getName();
-                // Console.VERBOSE("Looking for: " + name);
-                if (name.startsWith(fromPath)) {
-                    Console.VERBOSE("Exploding: " + name);
-                    final String targetName = name.substring(fromPath.length()).trim();
-                    if (!"".equals(targetName)) // not empty
-                    {
-                        final File localFile = new File(home, targetName);
-                        if (override && localFile.exists()) {
-                            localFile.delete();
-                        }
-                        if (!localFile.exists()) {
-                            explodeEntry(targetName, localFile, jar, name);
-                        }
+            try (final Source source = Source.open(jarPath)) {
+                final List<Target> files = ExtractionManager.select(home, source, previous, origin, current);
+                // largest first
+                Collections.sort(files, (o1, o2) -> Long.compare(o2.entry.getSize(), o1.entry.getSize()));
+                explodeEntries(home, source, files, current);
+            }
+        }
+    }
+
+    /**
+     * Route archive entries to their target in a single scan, create directories and select files which must be exploded.
+     *
+     * @param home
+     * @param source
+     * @param previous extraction cache of last extraction (can be null)
+     * @param origin directory of last extraction: home, or another directory from which unchanged files are hard linked
+     * @param current extraction cache to feed with directories and fresh files (can be null)
+     * @return files to explode.
+     * @throws IOException
+     */
+    private static List<Target> select(final File home, final Source source, final ExtractionCache previous, final File origin,
+            final ExtractionCache current) throws IOException {
+        // single scan: route each entry to its target, first place win
+        final Map<String, Target> targets = new LinkedHashMap<>();
+        for (final JarEntry entry : Collections.list(source.jar.entries())) {
+            final Target target = Target.route(entry);
+            if ((target != null) && ExtractionManager.isLoadable(target)) {
+                final Target other = targets.get(target.targetName);
+                if ((other == null) || (other.place > target.place)) {
+                    targets.put(target.targetName, target);
+                }
+            }
+        }
+        // select what must be exploded
+        final List<Target> files = new ArrayList<>();
+        for (final Target target : targets.values()) {
+            final File localFile = new File(home, target.targetName);
+            if (current != null) {
+                final File last = new File(origin, target.targetName);
+                if ((previous != null) && previous.isFresh(target.targetName, target.entry, last)
+                        && (last.equals(localFile) || ExtractionManager.link(last, localFile))) {
+                    if (target.entry.isDirectory()) {
+                        current.put(target.targetName, target.entry);
+                    } else {
+                        current.put(target.targetName, target.entry, localFile);
                     }
+                    continue;
+                }
+                if (localFile.isFile()) {
+                    localFile.delete();
                 }
+            } else if (localFile.isFile() && (target.entry.getSize() >= 0) && (localFile.length() != target.entry.getSize())) {
+                // without cache, an existing file is reused if it has the right size
+                localFile.delete();
+            }
+            if (!localFile.exists()) {
+                if (target.entry.isDirectory()) {
+                    // directories are created first, in archive order
+                    explodeEntry(target.targetName, localFile, source, target.entry.getName());
+                } else {
+                    files.add(target);
+                }
+            }
+            if ((current != null) && target.entry.isDirectory()) {
+                current.put(target.targetName, target.entry);
             }
         }
+        return files;
+    }
+
+    /**
+     * Explode specified files.
+     *
+     * @param home
+     * @param source
+     * @param files files to explode, in scheduling order
+     * @param current extraction cache to feed (can be null)
+     * @return a list of exploded files.
+     * @throws IOException
+     */
+    private static List<Target> explodeEntries(final File home, final Source source, final List<Target> files,
+            final ExtractionCache current) throws IOException {
+        final List<Target> exploded = new ArrayList<>(files.size());
+        final int threads = Math.min(ExtractionManager.extractionThreads, files.size());
+        if (threads <= 1) {
+            for (final Target target : files) {
+                if (explodeTarget(home, source, target, current)) {
+                    exploded.add(target);
+                }
+            }
+            return exploded;
+        }
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            final List<Future<Boolean>> futures = new ArrayList<>(files.size());
+            for (final Target target : files) {
+                futures.add(pool.submit(() -> explodeTarget(home, source, target, current)));
+            }
+            IOException failure = null;
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    if (futures.get(i).get()) {
+                        exploded.add(files.get(i));
+                    }
+                } catch (final ExecutionException exception) {
+                    if (failure == null) {
+                        failure = exception.getCause() instanceof IOException ? (IOException) exception.getCause()
+                                : new IOException(exception.getCause());
+                    }
+                } catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while exploding", exception);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return exploded;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Explode a single file, and register it in extraction cache.
+     *
+     * @param current extraction cache to feed (can be null)
+     * @return true if file has been exploded
+     * @throws IOException
+     */
+    private static boolean explodeTarget(final File home, final Source source, final Target target, final ExtractionCache current)
+            throws IOException {
+        Console.VERBOSE(() -> "Exploding: " + target.entry.getName());
+        final Timeline.Event event = Timeline.get().begin("extract:" + target.targetName);
+        final File localFile = new File(home, target.targetName);
+        explodeEntry(target.targetName, localFile, source, target.entry.getName());
+        event.end(localFile.length());
+        if (!localFile.exists()) {
+            return false;
+        }
+        if (current != null) {
+            current.put(target.targetName, target.entry, localFile);
+        }
+        return true;
     }
 
     /**
@@ -218,11 +625,12 @@ public class ExtractionManager {
      *
      * @param targetName
      * @param localFile
-     * @param jar
+     * @param source
      * @param name
      * @throws IOException
      */
-    private static void explodeEntry(final String targetName, final File localFile, final JarFile jar, final String name) throws IOException {
+    private static void explodeEntry(final String targetName, final File localFile, final Source source, final String name)
+            throws IOException {
         // create a directory
         if (targetName.endsWith("/")) {
             if (!localFile.mkdirs()) {
@@ -233,28 +641,193 @@ public class ExtractionManager {
             if (!localFile.exists()) {
                 final File parent = localFile.getParentFile();
                 if ((parent != null) && !parent.exists()) {
-                    if (!parent.mkdirs()) {
+                    // another worker could create it at same time
+                    if (!parent.mkdirs() && !parent.isDirectory()) {
                         throw new IOException("Parent File Of '" + localFile.getPath() + "' could not be created");
                     }
                 }
                 if (!localFile.createNewFile()) {
                     throw new IOException("Unable to create file " + localFile.getPath());
                 }
-                InputStream inputStream = null;
+                final FlightRecorder.Event event = FlightRecorder.EXTRACTION.begin();
                 try {
-                    inputStream = jar.getInputStream(jar.getEntry(name));
-                    if (inputStream == null) {
-                        throw new IOException("Unable to access resource '" + name + "'");
-                    }
-                    Files.copy(inputStream, Paths.get(localFile.toURI()), StandardCopyOption.REPLACE_EXISTING);
+                    source.copy(name, localFile);
+                } catch (final ZipException exception) {
+                    Console.WARNING("Corrupted entry " + name + ": " + exception.getMessage());
+                    delete(localFile);
                 } catch (final IOException exception) {
                     Console.VERBOSE("Error when exploding Entry: " + name, exception);
                     delete(localFile);
                 } finally {
-                    close(inputStream);
+                    event.commit(targetName, localFile.length());
+                }
+            }
+        }
+    }
+
+    /**
+     * Source archive of an extraction.
+     *
+     * Entries stored (not compressed) are copied from archive file with {@link FileChannel#transferTo(long, long,
+     * java.nio.channels.WritableByteChannel)}: content stay in kernel. Other entries are inflated by {@link JarFile} through a pool of
+     * buffers.
+     */
+    private static final class Source implements Closeable {
+
+        private static final int BUFFER_SIZE = 64 * 1024;
+        private static final Queue<byte[]> BUFFERS = new ConcurrentLinkedQueue<>();
+
+        private final JarFile jar;
+        /**
+         * Archive file channel and central directory, null if archive can not be mapped.
+         */
+        private final FileChannel channel;
+        private final ZipDirectory directory;
+
+        private Source(final JarFile jar, final FileChannel channel, final ZipDirectory directory) {
+            this.jar = jar;
+            this.channel = channel;
+            this.directory = directory;
+        }
+
+        /**
+         * @param location archive location
+         * @return an opened source.
+         * @throws IOException if archive can not be read.
+         */
+        static Source open(final String location) throws IOException {
+            final String path = URLDecoder.decode(location, "UTF-8");
+            final JarFile jar = new JarFile(path);
+            FileChannel channel = null;
+            ZipDirectory directory = null;
+            try {
+                channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+                if (channel.size() <= Integer.MAX_VALUE) {
+                    directory = ZipDirectory.parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                }
+            } catch (final IOException exception) {
+                Console.VERBOSE("Archive entries will be inflated: " + exception.getMessage());
+            }
+            if (directory == null) {
+                ExtractionManager.close(channel);
+                channel = null;
+            }
+            return new Source(jar, channel, directory);
+        }
+
+        /**
+         * Copy content of an entry.
+         *
+         * @param name entry name
+         * @param localFile existing destination file
+         * @throws IOException if an error occurs
+         */
+        void copy(final String name, final File localFile) throws IOException {
+            final ZipDirectory.Entry entry = directory != null ? directory.getEntry(name) : null;
+            try (FileChannel output = FileChannel.open(localFile.toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                if ((entry != null) && (entry.getMethod() == ZipEntry.STORED)) {
+                    final long offset = directory.getDataOffset(entry);
+                    final long size = entry.getCompressedSize();
+                    long position = 0;
+                    while (position < size) {
+                        final long count = channel.transferTo(offset + position, size - position, output);
+                        if (count <= 0) {
+                            throw new IOException("Truncated entry '" + name + "'");
+                        }
+                        position += count;
+                    }
+                    // from pages just transferred, file is not read again
+                    final CRC32 crc = new CRC32();
+                    crc.update(directory.getRawData(entry));
+                    Source.check(name, entry.getSize(), entry.getCrc(), position, crc.getValue());
+                    return;
+                }
+                final JarEntry jarEntry = jar.getJarEntry(name);
+                if (jarEntry == null) {
+                    throw new IOException("Unable to access resource '" + name + "'");
+                }
+                byte[] buffer = Source.BUFFERS.poll();
+                if (buffer == null) {
+                    buffer = new byte[Source.BUFFER_SIZE];
+                }
+                final CRC32 crc = new CRC32();
+                long size = 0;
+                try (InputStream input = jar.getInputStream(jarEntry)) {
+                    int count;
+                    while ((count = input.read(buffer)) >= 0) {
+                        crc.update(buffer, 0, count);
+                        size += count;
+                        final ByteBuffer view = ByteBuffer.wrap(buffer, 0, count);
+                        while (view.hasRemaining()) {
+                            output.write(view);
+                        }
+                    }
+                } finally {
+                    Source.BUFFERS.offer(buffer);
                 }
+                Source.check(name, jarEntry.getSize(), jarEntry.getCrc(), size, crc.getValue());
+            }
+        }
+
+        /**
+         * Check size and CRC of an extracted entry against archive metadata (unknown values are ignored).
+         *
+         * @throws ZipException if they do not match.
+         */
+        private static void check(final String name, final long expectedSize, final long expectedCrc, final long size, final long crc)
+                throws ZipException {
+            if ((expectedSize >= 0) && (expectedSize != size)) {
+                throw new ZipException("invalid size " + size + " (expected " + expectedSize + ")");
             }
+            if ((expectedCrc >= 0) && (expectedCrc != crc)) {
+                throw new ZipException("invalid CRC " + Long.toHexString(crc) + " (expected " + Long.toHexString(expectedCrc) + ")");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            ExtractionManager.close(channel);
+            jar.close();
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Target of an archive entry.
+     */
+    private static final class Target {
+        /**
+         * Entry in archive.
+         */
+        private final JarEntry entry;
+        /**
+         * Name relative to lib folder.
+         */
+        private final String targetName;
+        /**
+         * Index of place in {@link ExtractionManager#PLACES}.
+         */
+        private final int place;
+
+        private Target(final JarEntry entry, final String targetName, final int place) {
+            this.entry = entry;
+            this.targetName = targetName;
+            this.place = place;
+        }
+
+        /**
+         * @param entry archive entry
+         * @return target of specified entry or null if entry is not a library.
+         */
+        private static Target route(final JarEntry entry) {
+            final String name = entry.getName();
+            for (int place = 0; place < ExtractionManager.PLACES.length; place++) {
+                if (name.startsWith(ExtractionManager.PLACES[place])) {
+                    final String targetName = name.substring(ExtractionManager.PLACES[place].length()).trim();
+                    return "".equals(targetName) ? null : new Target(entry, targetName, place);
+                }
+            }
+            return null;
+        }
+    }
+}
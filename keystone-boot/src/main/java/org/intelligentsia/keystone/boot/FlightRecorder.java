@@ -0,0 +1,336 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * FlightRecorder define Keystone events of Java Flight Recorder, so bootstrap activity can be correlated with application behavior
+ * in a single recording:
+ * <ul>
+ * <li>keystone.Extraction: extraction of a file, with its name and size</li>
+ * <li>keystone.ClassPath: class path computation, with number of entries</li>
+ * <li>keystone.ClassLookupMiss: class not found by Keystone class loader</li>
+ * <li>keystone.LoadLibrary: native library loading, with its path and result</li>
+ * <li>keystone.Operation: operation requested by application (restart, reload, clean)</li>
+ * </ul>
+ *
+ * Event types are defined at runtime with "jdk.jfr.EventFactory" through reflection, as bootstrap still runs on JVM without JFR:
+ * in this case (or when event is not enabled in recording), events are no-ops. Event types are only defined once Flight Recorder
+ * is initialized (a recording has been started): JFR classes are not loaded on a boot without recording.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class FlightRecorder {
+
+    private static final String CATEGORY = "Keystone";
+
+    /**
+     * Extraction of a file: name, bytes.
+     */
+    public static final EventType EXTRACTION = new EventType("keystone.Extraction", "Extraction", "Extraction of a file from archive",
+            new String[] { "name", "bytes" }, new Class<?>[] { String.class, long.class });
+    /**
+     * Class path computation: entries.
+     */
+    public static final EventType CLASS_PATH = new EventType("keystone.ClassPath", "Class Path", "Class path computation",
+            new String[] { "entries" }, new Class<?>[] { int.class });
+    /**
+     * Class not found: className.
+     */
+    public static final EventType CLASS_LOOKUP_MISS = new EventType("keystone.ClassLookupMiss", "Class Lookup Miss",
+            "Class not found by Keystone class loader", new String[] { "className" }, new Class<?>[] { String.class });
+    /**
+     * Native library loading: library, path, loaded.
+     */
+    public static final EventType LOAD_LIBRARY = new EventType("keystone.LoadLibrary", "Load Library", "Native library loading",
+            new String[] { "library", "path", "loaded" }, new Class<?>[] { String.class, String.class, boolean.class });
+    /**
+     * Operation requested by application: operation, message.
+     */
+    public static final EventType OPERATION = new EventType("keystone.Operation", "Operation",
+            "Operation requested by application", new String[] { "operation", "message" },
+            new Class<?>[] { String.class, String.class });
+
+    /**
+     * True once Flight Recorder has been initialized (never reset).
+     */
+    private static volatile boolean recording = false;
+
+    private FlightRecorder() {
+        super();
+    }
+
+    /**
+     * @return true if Java Flight Recorder events are available on this JVM.
+     */
+    public static boolean isAvailable() {
+        return Recorder.IS_INITIALIZED != null;
+    }
+
+    /**
+     * @return true if Flight Recorder is initialized: a recording has been started, with "-XX:StartFlightRecording" or later.
+     */
+    public static boolean isRecording() {
+        if (!FlightRecorder.recording && Recorder.IS_INITIALIZED != null) {
+            try {
+                FlightRecorder.recording = (Boolean) Recorder.IS_INITIALIZED.invoke(null);
+            } catch (final Exception exception) {
+                return false;
+            }
+        }
+        return FlightRecorder.recording;
+    }
+
+    /**
+     * A Keystone event type.
+     */
+    public static final class EventType {
+
+        private final String name;
+        private final String label;
+        private final String description;
+        private final String[] fields;
+        private final Class<?>[] types;
+        /**
+         * jdk.jfr.EventFactory, null until defined or if JFR is not available.
+         */
+        private volatile Object factory;
+        /**
+         * jdk.jfr.EventType, null until defined or if JFR is not available.
+         */
+        private volatile Object type;
+        private volatile boolean defined;
+
+        private EventType(final String name, final String label, final String description, final String[] fields,
+                final Class<?>[] types) {
+            super();
+            this.name = name;
+            this.label = label;
+            this.description = description;
+            this.fields = fields;
+            this.types = types;
+        }
+
+        /**
+         * Define this event type with JFR, once.
+         */
+        private synchronized void define() {
+            if (defined) {
+                return;
+            }
+            final Methods methods = Holder.METHODS;
+            if (methods != null) {
+                try {
+                    final Object eventFactory = methods.create(name, label, description, fields, types);
+                    type = methods.getEventType.invoke(eventFactory);
+                    factory = eventFactory;
+                } catch (final Exception exception) {
+                    Console.VERBOSE("Unable to define JFR event " + name, exception);
+                }
+            }
+            defined = true;
+        }
+
+        /**
+         * @return true if this event type is enabled in a running recording.
+         */
+        public boolean isEnabled() {
+            if (!FlightRecorder.isRecording()) {
+                return false;
+            }
+            if (!defined) {
+                define();
+            }
+            if (factory == null) {
+                return false;
+            }
+            try {
+                return (Boolean) Holder.METHODS.isEnabled.invoke(type);
+            } catch (final Exception exception) {
+                return false;
+            }
+        }
+
+        /**
+         * Begin an event.
+         *
+         * @return event, a no-op if this event type is not enabled.
+         */
+        public Event begin() {
+            if (!isEnabled()) {
+                return Event.NOOP;
+            }
+            try {
+                final Object event = Holder.METHODS.newEvent.invoke(factory);
+                Holder.METHODS.begin.invoke(event);
+                return new Event(event);
+            } catch (final Exception exception) {
+                return Event.NOOP;
+            }
+        }
+
+        /**
+         * Commit an instant event.
+         *
+         * @param values field values
+         */
+        public void commit(final Object... values) {
+            if (isEnabled()) {
+                begin().commit(values);
+            }
+        }
+    }
+
+    /**
+     * A Keystone event.
+     */
+    public static final class Event {
+
+        private static final Event NOOP = new Event(null);
+
+        /**
+         * jdk.jfr.Event, null for a no-op event.
+         */
+        private final Object event;
+
+        private Event(final Object event) {
+            super();
+            this.event = event;
+        }
+
+        /**
+         * Set fields values, end and commit this event.
+         *
+         * @param values field values, in order of event type fields
+         */
+        public void commit(final Object... values) {
+            if (event != null) {
+                try {
+                    for (int i = 0; i < values.length; i++) {
+                        Holder.METHODS.set.invoke(event, i, values[i]);
+                    }
+                    Holder.METHODS.commit.invoke(event);
+                } catch (final Exception exception) {
+                    Console.VERBOSE("Unable to commit JFR event", exception);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lookup of "jdk.jfr.FlightRecorder.isInitialized", on first event.
+     */
+    private static final class Recorder {
+
+        /**
+         * null if JFR is not available.
+         */
+        private static final Method IS_INITIALIZED = Recorder.lookup();
+
+        private static Method lookup() {
+            try {
+                return Class.forName("jdk.jfr.FlightRecorder", false, ClassLoader.getSystemClassLoader()).getMethod("isInitialized");
+            } catch (final ReflectiveOperationException | LinkageError exception) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * JFR methods, loaded once Flight Recorder is initialized.
+     */
+    private static final class Holder {
+
+        /**
+         * null if JFR is not available.
+         */
+        private static final Methods METHODS = Methods.load();
+    }
+
+    /**
+     * Reflective access to "jdk.jfr" API.
+     */
+    private static final class Methods {
+
+        private final Method createFactory;
+        private final Constructor<?> annotationElement;
+        private final Constructor<?> valueDescriptor;
+        private final Class<? extends Annotation> nameAnnotation;
+        private final Class<? extends Annotation> labelAnnotation;
+        private final Class<? extends Annotation> descriptionAnnotation;
+        private final Class<? extends Annotation> categoryAnnotation;
+        private final Method getEventType;
+        private final Method isEnabled;
+        private final Method newEvent;
+        private final Method begin;
+        private final Method set;
+        private final Method commit;
+
+        private Methods(final ClassLoader loader) throws ReflectiveOperationException {
+            super();
+            final Class<?> factory = Class.forName("jdk.jfr.EventFactory", true, loader);
+            final Class<?> event = Class.forName("jdk.jfr.Event", true, loader);
+            final Class<?> annotation = Class.forName("jdk.jfr.AnnotationElement", true, loader);
+            createFactory = factory.getMethod("create", List.class, List.class);
+            annotationElement = annotation.getConstructor(Class.class, Object.class);
+            valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor", true, loader).getConstructor(Class.class, String.class);
+            nameAnnotation = Class.forName("jdk.jfr.Name", true, loader).asSubclass(Annotation.class);
+            labelAnnotation = Class.forName("jdk.jfr.Label", true, loader).asSubclass(Annotation.class);
+            descriptionAnnotation = Class.forName("jdk.jfr.Description", true, loader).asSubclass(Annotation.class);
+            categoryAnnotation = Class.forName("jdk.jfr.Category", true, loader).asSubclass(Annotation.class);
+            getEventType = factory.getMethod("getEventType");
+            isEnabled = Class.forName("jdk.jfr.EventType", true, loader).getMethod("isEnabled");
+            newEvent = factory.getMethod("newEvent");
+            begin = event.getMethod("begin");
+            set = event.getMethod("set", int.class, Object.class);
+            commit = event.getMethod("commit");
+        }
+
+        /**
+         * @return JFR methods, or null if JFR is not available.
+         */
+        private static Methods load() {
+            try {
+                return new Methods(ClassLoader.getSystemClassLoader());
+            } catch (final ReflectiveOperationException | LinkageError exception) {
+                return null;
+            }
+        }
+
+        private Object create(final String name, final String label, final String description, final String[] fields,
+                final Class<?>[] types) throws ReflectiveOperationException {
+            final List<Object> annotations = Arrays.asList(annotationElement.newInstance(nameAnnotation, name),
+                    annotationElement.newInstance(labelAnnotation, label),
+                    annotationElement.newInstance(descriptionAnnotation, description),
+                    annotationElement.newInstance(categoryAnnotation, new String[] { FlightRecorder.CATEGORY }));
+            final List<Object> values = new ArrayList<>(fields.length);
+            for (int i = 0; i < fields.length; i++) {
+                values.add(valueDescriptor.newInstance(types[i], fields[i]));
+            }
+            return createFactory.invoke(null, annotations, values);
+        }
+    }
+}
@@ -28,16 +28,79 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * JniLoader.
  *
+ * Native libraries of a directory can be registered once extracted: directory is listed a single time, and each lookup is then a
+ * map hit (or miss) keyed by system library name, for the running platform. Lookups in directories which are not registered check
+ * file system.
+ *
+ * A library can be shipped in several variants, in {directory}/natives/{variant} (see {@link OSDetector#rank(String)}): the variant
+ * supported by host which require most CPU features is loaded, otherwise the baseline library of {directory}.
+ *
  * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
  *
  */
 public class JniLoader {
 
+    /**
+     * Folder of native variants, located in libraries directory.
+     */
+    public static final String VARIANTS = "natives";
+
+    /**
+     * Registered native libraries by directory, then by system library name.
+     */
+    private static final Map<File, Map<String, String>> REGISTRY = new ConcurrentHashMap<>();
+
+    /**
+     * Register all files of a directory, with a single listing. Registration is complete: a library which is not registered is not
+     * searched on file system.
+     *
+     * @param directory
+     *            directory location of libraries
+     */
+    public static void register(final File directory) {
+        final Map<String, String> libraries = new ConcurrentHashMap<>();
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                libraries.put(file.getName(), file.getAbsolutePath());
+            }
+        }
+        // best variant last
+        final List<File> variants = JniLoader.variants(directory);
+        Collections.reverse(variants);
+        for (final File variant : variants) {
+            final File[] natives = variant.listFiles();
+            if (natives != null) {
+                for (final File file : natives) {
+                    libraries.put(file.getName(), file.getAbsolutePath());
+                }
+            }
+        }
+        JniLoader.REGISTRY.put(directory.getAbsoluteFile(), libraries);
+        Console.VERBOSE(() -> libraries.size() + " files registered from '" + directory.getPath() + "' for " + OSDetector.getName());
+    }
+
+    /**
+     * Forget registration of a directory (after a clean up).
+     *
+     * @param directory
+     *            directory location of libraries
+     */
+    public static void unregister(final File directory) {
+        JniLoader.REGISTRY.remove(directory.getAbsoluteFile());
+    }
+
     /**
      * Returns the absolute path name of a native library. The VM invokes this
      * method to locate the native libraries that belong to classes loaded with
@@ -55,12 +118,118 @@ public class JniLoader {
     public static String findLibrary(final File directory, final String libname) {
         final String systemLibName = System.mapLibraryName(libname);
         //Console.VERBOSE("Library '" + libname + "' lookup for '" + systemLibName + "'");
+        final Map<String, String> libraries = JniLoader.REGISTRY.get(directory.getAbsoluteFile());
+        if (libraries != null) {
+            return libraries.get(systemLibName);
+        }
         File lib = new File(directory, systemLibName);
+        for (final File variant : JniLoader.variants(directory)) {
+            final File candidate = new File(variant, systemLibName);
+            if (candidate.exists()) {
+                lib = candidate;
+                break;
+            }
+        }
         if (!lib.exists()) {
             return null;
         }
-        Console.VERBOSE("Library '" + libname + "' found ('" + lib.getAbsolutePath() + "')");
-        return lib.getAbsolutePath();
+        final String path = lib.getAbsolutePath();
+        Console.VERBOSE(() -> "Library '" + libname + "' found ('" + path + "')");
+        return path;
+    }
+
+    /**
+     * @param directory directory location of libraries
+     * @return variant directories supported by host, best first.
+     */
+    private static List<File> variants(final File directory) {
+        final List<File> variants = new ArrayList<>();
+        final File[] files = new File(directory, JniLoader.VARIANTS).listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                if (file.isDirectory() && (OSDetector.rank(file.getName()) >= 0)) {
+                    variants.add(file);
+                }
+            }
+        }
+        Collections.sort(variants, (v1, v2) -> Integer.compare(OSDetector.rank(v2.getName()), OSDetector.rank(v1.getName())));
+        return variants;
+    }
+
+    /**
+     * Check if a file of libraries directory can be loaded on a platform: variants of another platform and native libraries of another
+     * OS (by extension: ".dll" for Windows, ".dylib" and ".jnilib" for Mac OS, ".so" for Linux and Mac OS) can not. Other files are
+     * always loadable.
+     *
+     * @param path relative path, with '/' separator
+     * @param platform platform like "linux-x86_64" (see {@link OSDetector#getPlatform()})
+     * @return false if specified file is useless on platform.
+     */
+    public static boolean isPlatform(final String path, final String platform) {
+        if (path.startsWith(JniLoader.VARIANTS + "/")) {
+            final int end = path.indexOf('/', JniLoader.VARIANTS.length() + 1);
+            final String variant = path.substring(JniLoader.VARIANTS.length() + 1, end < 0 ? path.length() : end);
+            if (!variant.isEmpty() && !variant.equals(platform) && !variant.startsWith(platform + "-")) {
+                return false;
+            }
+        }
+        final String name = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ENGLISH);
+        final String os = platform.indexOf('-') < 0 ? platform : platform.substring(0, platform.indexOf('-'));
+        if (name.endsWith(".jar")) {
+            return true;
+        }
+        if (name.endsWith(".dll")) {
+            return "windows".equals(os);
+        }
+        if (name.endsWith(".dylib") || name.endsWith(".jnilib")) {
+            return "mac".equals(os);
+        }
+        if (name.endsWith(".so") || name.contains(".so.")) {
+            return !"windows".equals(os);
+        }
+        return true;
+    }
+
+    /**
+     * @param path relative path of a file of libraries directory, with '/' separator
+     * @return false if specified file is useless on host: see {@link #isPlatform(String, String)}, and variants which require a CPU
+     *         feature not supported by host.
+     */
+    public static boolean isLoadable(final String path) {
+        if (!JniLoader.isPlatform(path, OSDetector.getPlatform())) {
+            return false;
+        }
+        if (path.startsWith(JniLoader.VARIANTS + "/")) {
+            final int end = path.indexOf('/', JniLoader.VARIANTS.length() + 1);
+            final String variant = path.substring(JniLoader.VARIANTS.length() + 1, end < 0 ? path.length() : end);
+            return variant.isEmpty() || (OSDetector.rank(variant) >= 0);
+        }
+        return true;
+    }
+
+    /**
+     * Rank path of a native library, relative to libraries directory.
+     *
+     * @param path relative path, with '/' separator
+     * @param systemLibName system library name (see {@link System#mapLibraryName(String)})
+     * @return -1 if path is not this library or a variant not supported by host, 0 for a baseline library, and the higher rank for
+     *         the faster variant.
+     */
+    public static int rank(final String path, final String systemLibName) {
+        if (path.equals(systemLibName)) {
+            return 0;
+        }
+        if (!path.endsWith("/" + systemLibName)) {
+            return -1;
+        }
+        final String parent = path.substring(0, path.length() - systemLibName.length() - 1);
+        if (!parent.startsWith(JniLoader.VARIANTS + "/")) {
+            // library in a sub folder
+            return 0;
+        }
+        final String variant = parent.substring(JniLoader.VARIANTS.length() + 1);
+        final int rank = variant.indexOf('/') < 0 ? OSDetector.rank(variant) : -1;
+        return rank < 0 ? -1 : rank + 1;
     }
 
     /**
@@ -74,6 +243,10 @@ public class JniLoader {
      */
     public static String findLibraryInClassPath(final String libname, final File destination) {
         final String systemLibName = System.mapLibraryName(libname);
+        final Map<String, String> libraries = JniLoader.REGISTRY.get(destination.getAbsoluteFile());
+        if ((libraries != null) && libraries.containsKey(systemLibName)) {
+            return libraries.get(systemLibName);
+        }
         File lib = new File(destination, systemLibName);
         if (lib.exists()) {
             return lib.getAbsolutePath();
@@ -87,7 +260,10 @@ public class JniLoader {
             inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream(systemLibName);
             if (inputStream != null) {
                 Files.copy(inputStream, Paths.get(lib.toURI()), StandardCopyOption.REPLACE_EXISTING);
-                Console.VERBOSE("Library '" + libname + "' found in classpath resource");
+                Console.VERBOSE(() -> "Library '" + libname + "' found in classpath resource");
+                if (libraries != null) {
+                    libraries.put(systemLibName, lib.getAbsolutePath());
+                }
                 return lib.getAbsolutePath();
             }
             return null;
@@ -100,7 +276,7 @@ public class JniLoader {
     }
 
     /**
-     * Load specified libraries.
+     * Load specified libraries, in order. A failure does not stop loading of next libraries.
      *
      * @param directory
      *            directory location of libraries
@@ -111,8 +287,36 @@ public class JniLoader {
     public static Boolean loadLibraries(final File directory, final String libnames) {
         final StringTokenizer tokenizer = new StringTokenizer(libnames, ",");
         Boolean result = Boolean.TRUE;
-        while (tokenizer.hasMoreTokens() && result) {
-            result = loadLibrary(directory, tokenizer.nextToken());
+        while (tokenizer.hasMoreTokens()) {
+            result &= loadLibrary(directory, tokenizer.nextToken().trim());
+        }
+        return result;
+    }
+
+    /**
+     * Preload specified libraries in dependency order: stages are separated by ';' and loaded one after the other. Example:
+     * "z,ssl;crypto" load "z" and "ssl", then "crypto". A failure does not stop loading of next libraries.
+     *
+     * Libraries are loaded sequentially: Runtime.load is synchronized on Java 8, and library loading is serialized by a lock on
+     * later JDKs, so loading threads would only wait for each other.
+     *
+     * Libraries are loaded on behalf of bootstrap class loader: this is intended for native dependencies of JNI libraries, not for
+     * JNI libraries of application classes which must be loaded by their own class loader.
+     *
+     * @param directory
+     *            directory location of libraries
+     * @param stages
+     *            libraries name
+     * @return true if all libraries has been successfully loaded.
+     */
+    public static Boolean preloadLibraries(final File directory, final String stages) {
+        Boolean result = Boolean.TRUE;
+        for (final String stage : stages.split(";")) {
+            for (final String libname : stage.split(",")) {
+                if (!"".equals(libname.trim())) {
+                    result &= JniLoader.loadLibrary(directory, libname.trim());
+                }
+            }
         }
         return result;
     }
@@ -132,15 +336,19 @@ public class JniLoader {
             Console.WARNING("Library '" + libname + "' has not be found ('" + libPath + "')");
             return Boolean.FALSE;
         }
+        final FlightRecorder.Event event = FlightRecorder.LOAD_LIBRARY.begin();
         try {
             Runtime.getRuntime().load(libPath);
         } catch (final UnsatisfiedLinkError e) {
+            event.commit(libname, libPath, false);
             Console.WARNING("Library '" + libname + "' not found ('" + libPath + "') or her dependencies not ever loaded", e);
             return Boolean.FALSE;
         } catch (final Throwable e) {
+            event.commit(libname, libPath, false);
             Console.WARNING("Loading Library '" + libname + "'", e);
             return Boolean.FALSE;
         }
+        event.commit(libname, libPath, true);
         return Boolean.TRUE;
     }
 }
@@ -0,0 +1,522 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipFile;
+
+/**
+ * KeystoneClassLoader is the application class loader of BootStrap.
+ *
+ * Each directory (package or resource path) is associated with libraries which contains it, so a class or a resource is searched
+ * only in its owner libraries, and a miss fail without opening any library. Libraries of {home}/lib are indexed at build time (see
+ * {@link ClassPathIndex}), others are indexed on first lookup.
+ *
+ * This class loader is parallel capable: classes are loaded under a lock per class name, and lookup structures are immutable or
+ * lazily initialized without locking the class loader.
+ *
+ * On JDK 9 and later, libraries are opened with runtime versioning: classes and resources of a multi-release jar are read from
+ * "META-INF/versions/{n}", like with {@link URLClassLoader}.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class KeystoneClassLoader extends URLClassLoader {
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    /**
+     * JarFile(File, boolean, int, Runtime.Version), null before JDK 9.
+     */
+    private static final Constructor<JarFile> VERSIONED_JAR_FILE;
+    /**
+     * Runtime.version(), null before JDK 9.
+     */
+    private static final Object RUNTIME_VERSION;
+    /**
+     * JarEntry.getRealName(), null before JDK 10.
+     */
+    private static final Method REAL_NAME;
+
+    static {
+        Constructor<JarFile> constructor = null;
+        Object version = null;
+        try {
+            final Class<?> versionClass = Class.forName("java.lang.Runtime$Version");
+            version = Runtime.class.getMethod("version").invoke(null);
+            constructor = JarFile.class.getConstructor(File.class, boolean.class, int.class, versionClass);
+        } catch (final ReflectiveOperationException | LinkageError exception) {
+            // multi-release jar are not supported by this JVM
+            version = null;
+        }
+        Method realName = null;
+        try {
+            realName = JarEntry.class.getMethod("getRealName");
+        } catch (final ReflectiveOperationException | LinkageError exception) {
+            realName = null;
+        }
+        VERSIONED_JAR_FILE = constructor;
+        RUNTIME_VERSION = version;
+        REAL_NAME = realName;
+    }
+
+    private final File home;
+    /**
+     * Jar libraries, in class path order.
+     */
+    private final List<Library> libraries;
+    /**
+     * True if class path contains some URL which are not jar file (directory for example).
+     */
+    private final boolean unmanagedUrls;
+    /**
+     * Libraries of each directory, null until all libraries are indexed.
+     */
+    private volatile Map<String, List<Library>> directories;
+    /**
+     * Lock used to index libraries.
+     */
+    private final Object indexLock = new Object();
+    /**
+     * Boot plan (can be null).
+     */
+    private final BootPlan plan;
+    /**
+     * Background extraction of {home}/lib (can be null).
+     */
+    private final Extraction extraction;
+
+    /**
+     * Build a new instance of KeystoneClassLoader.
+     *
+     * @param urls class path
+     * @param parent parent class loader
+     * @param home home directory
+     * @param index build time index of {home}/lib (can be null)
+     */
+    public KeystoneClassLoader(final URL[] urls, final ClassLoader parent, final File home, final ClassPathIndex index) {
+        this(urls, parent, home, index, null);
+    }
+
+    /**
+     * Build a new instance of KeystoneClassLoader.
+     *
+     * @param urls class path
+     * @param parent parent class loader
+     * @param home home directory
+     * @param index build time index of {home}/lib (can be null)
+     * @param plan boot plan, used to locate native libraries of {home}/lib (can be null)
+     */
+    public KeystoneClassLoader(final URL[] urls, final ClassLoader parent, final File home, final ClassPathIndex index,
+            final BootPlan plan) {
+        this(urls, parent, home, index, plan, null);
+    }
+
+    /**
+     * Build a new instance of KeystoneClassLoader.
+     *
+     * @param urls class path
+     * @param parent parent class loader
+     * @param home home directory
+     * @param index build time index of {home}/lib (can be null)
+     * @param plan boot plan, used to locate native libraries of {home}/lib (can be null)
+     * @param extraction background extraction of {home}/lib: a library is opened only once it is exploded (can be null)
+     */
+    public KeystoneClassLoader(final URL[] urls, final ClassLoader parent, final File home, final ClassPathIndex index,
+            final BootPlan plan, final Extraction extraction) {
+        super(urls, parent);
+        this.home = home;
+        this.plan = plan;
+        this.extraction = extraction;
+        this.libraries = new ArrayList<>(urls.length);
+        boolean unmanaged = false;
+        final File lib = new File(home, "lib").getAbsoluteFile();
+        for (final URL url : urls) {
+            final File file = KeystoneClassLoader.toFile(url);
+            if ((file != null) && file.getName().endsWith(".jar")) {
+                final boolean indexed = (index != null) && lib.equals(file.getAbsoluteFile().getParentFile())
+                        && index.contains(file.getName());
+                final String prefix = lib.getPath() + File.separator;
+                final String path = file.getAbsolutePath();
+                final String targetName = path.startsWith(prefix) ? path.substring(prefix.length()).replace(File.separatorChar, '/')
+                        : null;
+                libraries.add(new Library(libraries.size(), url, file, indexed ? index.getDirectories(file.getName()) : null,
+                        targetName != null ? extraction : null, targetName));
+            } else {
+                unmanaged = true;
+            }
+        }
+        this.unmanagedUrls = unmanaged;
+    }
+
+    @Override
+    protected Class<?> findClass(final String name) throws ClassNotFoundException {
+        final String path = name.replace('.', '/').concat(".class");
+        for (final Library library : lookup(path)) {
+            try {
+                final JarFile jar = library.getJarFile();
+                final JarEntry entry = jar.getJarEntry(path);
+                if (entry != null) {
+                    return defineClass(name, library, jar, entry);
+                }
+            } catch (final IOException exception) {
+                throw new ClassNotFoundException(name, exception);
+            }
+        }
+        if (unmanagedUrls) {
+            try {
+                return super.findClass(name);
+            } catch (final ClassNotFoundException exception) {
+                FlightRecorder.CLASS_LOOKUP_MISS.commit(name);
+                throw exception;
+            }
+        }
+        FlightRecorder.CLASS_LOOKUP_MISS.commit(name);
+        throw new ClassNotFoundException(name);
+    }
+
+    @Override
+    public URL findResource(final String name) {
+        for (final Library library : lookup(name)) {
+            final URL url = library.getResource(name);
+            if (url != null) {
+                return url;
+            }
+        }
+        return unmanagedUrls ? super.findResource(name) : null;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(final String name) throws IOException {
+        final List<URL> urls = new ArrayList<>();
+        for (final Library library : lookup(name)) {
+            final URL url = library.getResource(name);
+            if (url != null) {
+                urls.add(url);
+            }
+        }
+        if (unmanagedUrls) {
+            urls.addAll(Collections.list(super.findResources(name)));
+        }
+        return Collections.enumeration(urls);
+    }
+
+    @Override
+    protected String findLibrary(final String libname) {
+        final String nativePath = plan != null ? plan.getNative(System.mapLibraryName(libname)) : null;
+        if (extraction != null) {
+            if (nativePath != null) {
+                extraction.await(nativePath);
+            } else {
+                extraction.awaitAll();
+            }
+        }
+        if (nativePath != null) {
+            final File file = BootPlan.resolve(new File(home, "lib"), nativePath);
+            if (file.exists()) {
+                Console.VERBOSE(() -> "Library '" + libname + "' found ('" + file.getAbsolutePath() + "')");
+                return file.getAbsolutePath();
+            }
+        }
+        String libPath = JniLoader.findLibrary(new File(home, "lib"), libname);
+        if (libPath == null) {
+            // Console.VERBOSE("Library '" + libname +
+            // "' has not be found in embedded libraries folder.");
+            libPath = JniLoader.findLibraryInClassPath(libname, new File(home, "lib-natives"));
+            if (libPath == null) {
+                // Console.VERBOSE("Library '" + libname +
+                // "' has not be found in classpath.");
+                return super.findLibrary(libname);
+            }
+        }
+        return libPath;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (final Library library : libraries) {
+            library.close();
+        }
+        super.close();
+    }
+
+    /**
+     * @param name entry name
+     * @return libraries which owns directory of specified entry name.
+     */
+    private List<Library> lookup(final String name) {
+        Map<String, List<Library>> result = directories;
+        if (result == null) {
+            result = index();
+        }
+        final List<Library> owners = result.get(ClassPathIndex.directory(name));
+        return owners != null ? owners : Collections.<Library> emptyList();
+    }
+
+    /**
+     * Index all libraries.
+     *
+     * @return libraries of each directory.
+     */
+    private Map<String, List<Library>> index() {
+        synchronized (indexLock) {
+            if (directories == null) {
+                final Map<String, List<Library>> result = new HashMap<>();
+                for (final Library library : libraries) {
+                    for (final String directory : library.getDirectories()) {
+                        List<Library> owners = result.get(directory);
+                        if (owners == null) {
+                            owners = new ArrayList<>(1);
+                            result.put(directory, owners);
+                        }
+                        owners.add(library);
+                    }
+                }
+                // published once, never modified
+                directories = result;
+            }
+            return directories;
+        }
+    }
+
+    private Class<?> defineClass(final String name, final Library library, final JarFile jar, final JarEntry entry) throws IOException {
+        final byte[] content;
+        try (InputStream input = jar.getInputStream(entry)) {
+            content = KeystoneClassLoader.read(input, entry.getSize());
+        }
+        final int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            definePackageIfNeeded(name.substring(0, dot), library);
+        }
+        // code signers are available once entry has been read
+        return defineClass(name, content, 0, content.length, new CodeSource(library.url, entry.getCodeSigners()));
+    }
+
+    @SuppressWarnings("deprecation")
+    private void definePackageIfNeeded(final String packageName, final Library library) throws IOException {
+        if (getPackage(packageName) == null) {
+            try {
+                final Manifest manifest = library.getManifest();
+                if (manifest != null) {
+                    definePackage(packageName, manifest, library.url);
+                } else {
+                    definePackage(packageName, null, null, null, null, null, null, null);
+                }
+            } catch (final IllegalArgumentException exception) {
+                // ever defined
+            }
+        }
+    }
+
+    private static byte[] read(final InputStream input, final long size) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(size > 0 ? (int) size : 4096);
+        final byte[] buffer = new byte[8192];
+        int count;
+        while ((count = input.read(buffer)) >= 0) {
+            output.write(buffer, 0, count);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Open a library, with runtime versioning when supported.
+     */
+    private static JarFile open(final File file) throws IOException {
+        if (KeystoneClassLoader.VERSIONED_JAR_FILE == null) {
+            return new JarFile(file);
+        }
+        try {
+            return KeystoneClassLoader.VERSIONED_JAR_FILE.newInstance(file, Boolean.TRUE, ZipFile.OPEN_READ,
+                    KeystoneClassLoader.RUNTIME_VERSION);
+        } catch (final InvocationTargetException exception) {
+            if (exception.getCause() instanceof IOException) {
+                throw (IOException) exception.getCause();
+            }
+            throw new IOException("Unable to open " + file.getPath(), exception.getCause());
+        } catch (final ReflectiveOperationException exception) {
+            return new JarFile(file);
+        }
+    }
+
+    /**
+     * @return name of entry inside library, which differ from entry name for a versioned entry of a multi-release jar.
+     */
+    private static String realName(final JarEntry entry) {
+        if (KeystoneClassLoader.REAL_NAME != null) {
+            try {
+                return (String) KeystoneClassLoader.REAL_NAME.invoke(entry);
+            } catch (final ReflectiveOperationException exception) {
+                // base name
+            }
+        }
+        return entry.getName();
+    }
+
+    private static File toFile(final URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (final URISyntaxException | IllegalArgumentException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * A jar library of class path.
+     */
+    private static final class Library {
+
+        private final int position;
+        private final URL url;
+        private final File file;
+        private final URL base;
+        /**
+         * Build time directories, or null if library is not indexed.
+         */
+        private final Set<String> indexed;
+        /**
+         * Background extraction of this library (can be null).
+         */
+        private final Extraction extraction;
+        /**
+         * Name relative to {home}/lib folder (can be null).
+         */
+        private final String targetName;
+        private volatile JarFile jarFile;
+        private volatile Manifest manifest;
+        private volatile boolean manifestLoaded;
+
+        private Library(final int position, final URL url, final File file, final Set<String> indexed, final Extraction extraction,
+                final String targetName) {
+            super();
+            this.position = position;
+            this.url = url;
+            this.file = file;
+            this.indexed = indexed;
+            this.extraction = extraction;
+            this.targetName = targetName;
+            URL jarUrl = null;
+            try {
+                jarUrl = new URL("jar:" + url + "!/");
+            } catch (final MalformedURLException exception) {
+                Console.VERBOSE("Invalid library URL " + url, exception);
+            }
+            this.base = jarUrl;
+        }
+
+        /**
+         * @return directories of this library.
+         */
+        private Iterable<String> getDirectories() {
+            if (indexed != null) {
+                return indexed;
+            }
+            final Set<String> result = new LinkedHashSet<>();
+            try {
+                for (final JarEntry entry : Collections.list(getJarFile().entries())) {
+                    result.add(ClassPathIndex.directory(entry.getName()));
+                    result.add(ClassPathIndex.directory(ClassPathIndex.unversioned(entry.getName())));
+                }
+            } catch (final IOException exception) {
+                Console.VERBOSE("Unable to index library " + file.getPath(), exception);
+            }
+            return result;
+        }
+
+        private JarFile getJarFile() throws IOException {
+            JarFile result = jarFile;
+            if (result == null) {
+                synchronized (this) {
+                    result = jarFile;
+                    if (result == null) {
+                        // wait only when library is still exploded
+                        if ((extraction != null) && !extraction.await(targetName)) {
+                            throw new IOException("Library " + targetName + " has not been exploded");
+                        }
+                        result = KeystoneClassLoader.open(file);
+                        jarFile = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        private Manifest getManifest() throws IOException {
+            if (!manifestLoaded) {
+                synchronized (this) {
+                    if (!manifestLoaded) {
+                        manifest = getJarFile().getManifest();
+                        manifestLoaded = true;
+                    }
+                }
+            }
+            return manifest;
+        }
+
+        private URL getResource(final String name) {
+            try {
+                if (base != null) {
+                    final JarEntry entry = getJarFile().getJarEntry(name);
+                    if (entry != null) {
+                        return new URL(base, KeystoneClassLoader.realName(entry));
+                    }
+                }
+            } catch (final IOException exception) {
+                Console.VERBOSE("Unable to read library " + file.getPath(), exception);
+            }
+            return null;
+        }
+
+        private synchronized void close() {
+            ExtractionManager.close(jarFile);
+            jarFile = null;
+        }
+
+        @Override
+        public String toString() {
+            return position + ":" + url;
+        }
+    }
+}
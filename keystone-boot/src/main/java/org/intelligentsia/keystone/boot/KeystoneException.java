@@ -94,12 +94,18 @@ public class KeystoneException extends RuntimeException {
 
     /**
      * Operation that can be processed by bootstrap.
+     * <ul>
+     * <li>NONE: nothing</li>
+     * <li>CLEAN: clean up before shutdown</li>
+     * <li>RESTART: restart a new JVM</li>
+     * <li>RELOAD: restart in same JVM, with a new class loader</li>
+     * </ul>
      *
      * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
      *
      */
     public enum Operation {
-        NONE, CLEAN, RESTART
+        NONE, CLEAN, RESTART, RELOAD
     }
 
 }
@@ -0,0 +1,39 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+/**
+ * Lifecycle is a callback of application, registered with {@link BootStrap#register(Lifecycle)}.
+ *
+ * Before an in process restart (see {@link KeystoneException.Operation#RELOAD}), BootStrap call {@link #stop()} of each registered
+ * lifecycle, in reverse order of registration. Application should stop all its non daemon threads, and release resources which are
+ * not garbage collected (sockets, files, timers,...), so its class loader can be dropped.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public interface Lifecycle {
+
+    /**
+     * Stop application.
+     *
+     * @throws Exception if application cannot be stopped.
+     */
+    void stop() throws Exception;
+}
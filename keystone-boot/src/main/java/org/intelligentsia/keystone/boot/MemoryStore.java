@@ -0,0 +1,169 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * MemoryStore locate home directory on a memory file system (tmpfs), in order to explode libraries without any disk I/O.
+ *
+ * Home directory is {root}/keystone-{id}-{random}, where root is "/dev/shm" per default and id is the version identifier of archive
+ * (see {@link SharedExtraction#id(String)}): each process has its own home directory, which is removed on shutdown whatever
+ * "BootStrap.cleanUpBudget" is. With "BootStrap.sharedExtraction", home directory is {root}/keystone-{id}, shared with other
+ * processes: only unused versions are removed on shutdown. A child JVM relaunched with a class data sharing archive use home
+ * directory of its launcher (see {@link #HOME}).
+ *
+ * Memory store is used only if root is a writable directory with enough usable space for all libraries of archive: otherwise, disk
+ * home directory is used.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class MemoryStore {
+
+    /**
+     * Name prefix of home directories, located in root.
+     */
+    public static final String PREFIX = "keystone-";
+    /**
+     * System property given to a relaunched child JVM, with memory home directory of its launcher.
+     */
+    public static final String HOME = "BootStrap.memoryHome";
+
+    private static final String DEFAULT_ROOT = "/dev/shm";
+
+    /**
+     * Memory home directory in use, or null.
+     */
+    private static volatile File home;
+
+    private MemoryStore() {
+        super();
+    }
+
+    /**
+     * @param arguments arguments
+     * @return true if option "BootStrap.extractionStore" is 'memory'.
+     */
+    public static boolean isEnabled(final Map<String, String> arguments) {
+        return "memory".equalsIgnoreCase(Arguments.getStringArgument(arguments, "BootStrap.extractionStore", "disk"));
+    }
+
+    /**
+     * @param option a JVM option
+     * @return true if specified option give memory home directory of launcher.
+     */
+    public static boolean isOption(final String option) {
+        return option.startsWith("-D" + MemoryStore.HOME + "=");
+    }
+
+    /**
+     * Resolve home directory in memory store.
+     *
+     * @param arguments arguments ("BootStrap.memoryDirectory" override root)
+     * @param location archive location
+     * @return home directory, or null if memory store is not available or has not enough space.
+     */
+    public static File getHomeDirectory(final Map<String, String> arguments, final String location) {
+        final File root = new File(Arguments.getStringArgument(arguments, "BootStrap.memoryDirectory", MemoryStore.DEFAULT_ROOT));
+        final File archive = new File(location);
+        if (!root.isDirectory() || !root.canWrite() || !archive.isFile()) {
+            Console.VERBOSE(() -> "Memory store " + root.getPath() + " is not available");
+            return null;
+        }
+        final String inherited = System.getProperty(MemoryStore.HOME);
+        if ((inherited != null) && new File(inherited).isDirectory()) {
+            // child of a launcher, which has already resolved home directory
+            MemoryStore.home = new File(inherited);
+            return MemoryStore.home;
+        }
+        final boolean shared = Arguments.getBooleanArgument(arguments, "BootStrap.sharedExtraction", Boolean.FALSE);
+        final String fingerprint = ExtractionCache.fingerprint(archive);
+        final String id = SharedExtraction.id(fingerprint);
+        // published version of a shared home directory
+        final File version = new File(new File(new File(root, MemoryStore.PREFIX + id), SharedExtraction.VERSIONS), id);
+        final ExtractionCache cache = shared ? ExtractionCache.load(new File(version, "lib")) : null;
+        if ((cache == null) || !cache.isUpToDate(fingerprint)) {
+            // libraries will be exploded: check space before
+            final long required;
+            try {
+                required = ExtractionManager.getRequiredSpace(location);
+            } catch (final IOException exception) {
+                Console.VERBOSE("Unable to read archive " + location, exception);
+                return null;
+            }
+            final long usable = root.getUsableSpace();
+            // keep a margin for directories and files written by application
+            if (usable < (required + (required / 10))) {
+                Console.INFO("Not enough space in memory store " + root.getPath() + " (" + usable + " bytes usable, " + required
+                        + " required), using disk");
+                return null;
+            }
+        }
+        final File directory;
+        try {
+            if (shared) {
+                directory = new File(root, MemoryStore.PREFIX + id);
+                Files.createDirectories(directory.toPath());
+            } else {
+                // removed on shutdown: must not be used by another process
+                directory = Files.createTempDirectory(root.toPath(), MemoryStore.PREFIX + id + "-").toFile();
+            }
+        } catch (final IOException exception) {
+            Console.VERBOSE("Unable to create home directory in " + root.getPath(), exception);
+            return null;
+        }
+        if (!directory.canWrite()) {
+            // owned by another user
+            return null;
+        }
+        MemoryStore.home = directory;
+        return directory;
+    }
+
+    /**
+     * @param directory home directory
+     * @return true if specified home directory is in memory store.
+     */
+    public static boolean holds(final File directory) {
+        return directory.equals(MemoryStore.home);
+    }
+
+    /**
+     * Release memory used by specified home directory.
+     *
+     * @param directory home directory
+     * @param shared if true, directory is shared with other processes and only versions which are not used are removed
+     * @param threads number of deleting threads
+     */
+    static void release(final File directory, final boolean shared, final int threads) {
+        if (shared) {
+            SharedExtraction.release();
+            SharedExtraction.reap(directory);
+            // deletion in memory is fast: no budget
+            Reaper.reap(directory, threads, 0);
+        } else {
+            Reaper.delete(Collections.singletonList(directory), threads, 0);
+        }
+    }
+}
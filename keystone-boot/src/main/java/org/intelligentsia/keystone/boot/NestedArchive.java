@@ -0,0 +1,276 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import org.intelligentsia.keystone.boot.protocol.keystone.Handler;
+
+/**
+ * NestedArchive give access to inner jar libraries of an archive without extracting them.
+ *
+ * Archive is memory mapped. Inner jar which are stored (not compressed) inside archive are directly read from this mapping, others
+ * are inflated in memory once.
+ *
+ * Each resource of an inner jar has an URL like "keystone:/path/of/archive.jar!/META-INF/lib/library.jar!/name".
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class NestedArchive {
+
+    /**
+     * Places where libraries are located inside archive, first one has priority.
+     */
+    private static final String[] PLACES = { "META-INF/lib/", "lib/" };
+
+    /**
+     * Opened archives, by path.
+     */
+    private static final Map<String, NestedArchive> ARCHIVES = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final String path;
+    private final ZipDirectory directory;
+    private final List<Jar> jars;
+
+    private NestedArchive(final File file, final ZipDirectory directory) throws IOException {
+        super();
+        this.file = file;
+        this.path = file.toURI().getRawPath();
+        this.directory = directory;
+        this.jars = new ArrayList<>();
+        for (final String place : NestedArchive.PLACES) {
+            for (final ZipDirectory.Entry entry : directory.getEntries()) {
+                final String name = entry.getName();
+                if (name.startsWith(place) && name.endsWith(".jar") && (name.indexOf('/', place.length()) < 0)) {
+                    jars.add(new Jar(this, entry, ZipDirectory.parse(directory.getContent(entry))));
+                }
+            }
+        }
+    }
+
+    /**
+     * Open specified archive.
+     *
+     * @param file archive file
+     * @return a NestedArchive instance.
+     * @throws IOException if archive is not readable or not supported (greater than 2Go or zip64).
+     */
+    public static NestedArchive open(final File file) throws IOException {
+        final File archive = file.getAbsoluteFile();
+        final String key = archive.toURI().getRawPath();
+        NestedArchive nestedArchive = NestedArchive.ARCHIVES.get(key);
+        if (nestedArchive == null) {
+            final ByteBuffer buffer;
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(archive, "r"); FileChannel channel = randomAccessFile.getChannel()) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Archive " + archive.getPath() + " is too large to be mapped");
+                }
+                // mapping stay valid after channel is closed
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            nestedArchive = new NestedArchive(archive, ZipDirectory.parse(buffer));
+            final NestedArchive other = NestedArchive.ARCHIVES.putIfAbsent(key, nestedArchive);
+            if (other != null) {
+                nestedArchive = other;
+            }
+        }
+        return nestedArchive;
+    }
+
+    /**
+     * @param path raw path of archive
+     * @return an opened archive or null.
+     */
+    public static NestedArchive get(final String path) {
+        return NestedArchive.ARCHIVES.get(path);
+    }
+
+    /**
+     * @return archive file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return directory of archive.
+     */
+    public ZipDirectory getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return inner jar libraries in class path order.
+     */
+    public List<Jar> getJars() {
+        return Collections.unmodifiableList(jars);
+    }
+
+    /**
+     * @param name entry name of an inner jar
+     * @return inner jar or null if not found.
+     */
+    public Jar getJar(final String name) {
+        for (final Jar jar : jars) {
+            if (jar.name.equals(name)) {
+                return jar;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param name a library file name like "libfoo.so"
+     * @return entry of this library, best variant for host first (see {@link JniLoader#rank(String, String)}), or null if not found.
+     */
+    public ZipDirectory.Entry getLibrary(final String name) {
+        ZipDirectory.Entry best = null;
+        int rank = -1;
+        for (final String place : NestedArchive.PLACES) {
+            final ZipDirectory.Entry entry = directory.getEntry(place + name);
+            if ((entry != null) && (rank < 0)) {
+                best = entry;
+                rank = 0;
+            }
+        }
+        for (final ZipDirectory.Entry entry : directory.getEntries()) {
+            for (final String place : NestedArchive.PLACES) {
+                if (entry.getName().startsWith(place + JniLoader.VARIANTS + "/")) {
+                    final int candidate = JniLoader.rank(entry.getName().substring(place.length()), name);
+                    if (candidate > rank) {
+                        best = entry;
+                        rank = candidate;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * An inner jar library.
+     */
+    public static final class Jar {
+
+        private final NestedArchive archive;
+        private final String name;
+        private final ZipDirectory directory;
+        private final URL url;
+        private volatile Manifest manifest;
+        private volatile boolean manifestLoaded;
+
+        private Jar(final NestedArchive archive, final ZipDirectory.Entry entry, final ZipDirectory directory) throws MalformedURLException {
+            super();
+            this.archive = archive;
+            this.name = entry.getName();
+            this.directory = directory;
+            this.url = Handler.url(archive.path + "!/" + name + "!/");
+        }
+
+        /**
+         * @return entry name of this jar in archive.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return directory of this jar.
+         */
+        public ZipDirectory getDirectory() {
+            return directory;
+        }
+
+        /**
+         * @return URL of this jar.
+         */
+        public URL getURL() {
+            return url;
+        }
+
+        /**
+         * @param resource resource name
+         * @return URL of specified resource or null if this jar did not contains it.
+         */
+        public URL getResource(final String resource) {
+            if (directory.getEntry(resource) == null) {
+                return null;
+            }
+            try {
+                return Handler.url(archive.path + "!/" + name + "!/" + resource);
+            } catch (final MalformedURLException exception) {
+                Console.VERBOSE("Invalid resource name " + resource, exception);
+                return null;
+            }
+        }
+
+        /**
+         * @param resource resource name
+         * @return content of specified resource or null if this jar did not contains it.
+         * @throws IOException
+         */
+        public byte[] read(final String resource) throws IOException {
+            final ZipDirectory.Entry entry = directory.getEntry(resource);
+            return entry != null ? directory.read(entry) : null;
+        }
+
+        /**
+         * @return manifest of this jar or null.
+         */
+        public Manifest getManifest() {
+            if (!manifestLoaded) {
+                synchronized (this) {
+                    if (!manifestLoaded) {
+                        try {
+                            final byte[] content = read(JarFile.MANIFEST_NAME);
+                            if (content != null) {
+                                manifest = new Manifest(new ByteArrayInputStream(content));
+                            }
+                        } catch (final IOException exception) {
+                            Console.VERBOSE("Unable to read manifest of " + name, exception);
+                        }
+                        manifestLoaded = true;
+                    }
+                }
+            }
+            return manifest;
+        }
+
+        @Override
+        public String toString() {
+            return url.toString();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Manifest;
+
+/**
+ * NestedJarClassLoader load classes and resources directly from inner jar libraries of archive, without any extraction.
+ *
+ * Extra URLs (external libraries) are searched after inner jar libraries. Native libraries can not be loaded from memory: they are
+ * extracted in {home}/lib-natives on first use.
+ *
+ * Like {@link KeystoneClassLoader}, classes and resources of a multi-release jar are read from "META-INF/versions/{n}", with the
+ * highest version supported by running JVM.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class NestedJarClassLoader extends URLClassLoader {
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final NestedArchive archive;
+    private final File home;
+    /**
+     * First inner jar which contains an entry, by entry name.
+     */
+    private final Map<String, NestedArchive.Jar> index;
+    /**
+     * Entry name of versioned classes and resources, by name, of each multi-release jar.
+     */
+    private final Map<NestedArchive.Jar, Map<String, String>> versioned;
+
+    /**
+     * Build a new instance of NestedJarClassLoader.
+     *
+     * @param archive archive
+     * @param urls extra URLs
+     * @param parent parent class loader
+     * @param home home directory
+     */
+    public NestedJarClassLoader(final NestedArchive archive, final URL[] urls, final ClassLoader parent, final File home) {
+        super(urls, parent);
+        this.archive = archive;
+        this.home = home;
+        this.index = new HashMap<>();
+        this.versioned = new HashMap<>();
+        final int feature = Ergonomics.feature(System.getProperty("java.specification.version"));
+        for (final NestedArchive.Jar jar : archive.getJars()) {
+            final Map<String, String> names = new HashMap<>();
+            Boolean multiRelease = null;
+            for (final ZipDirectory.Entry entry : jar.getDirectory().getEntries()) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                index.putIfAbsent(entry.getName(), jar);
+                final int version = ClassPathIndex.version(entry.getName());
+                if ((version > 0) && (version <= feature)) {
+                    if (multiRelease == null) {
+                        multiRelease = NestedJarClassLoader.isMultiRelease(jar);
+                    }
+                    final String name = ClassPathIndex.unversioned(entry.getName());
+                    final String current = names.get(name);
+                    if (multiRelease && ((current == null) || (ClassPathIndex.version(current) < version))) {
+                        names.put(name, entry.getName());
+                    }
+                }
+            }
+            if (!names.isEmpty()) {
+                for (final String name : names.keySet()) {
+                    index.putIfAbsent(name, jar);
+                }
+                versioned.put(jar, names);
+            }
+        }
+    }
+
+    private static boolean isMultiRelease(final NestedArchive.Jar jar) {
+        final Manifest manifest = jar.getManifest();
+        return (manifest != null) && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue("Multi-Release"));
+    }
+
+    /**
+     * @param jar inner jar
+     * @param name class or resource name
+     * @return entry name of specified class or resource in jar, with runtime versioning.
+     */
+    private String entry(final NestedArchive.Jar jar, final String name) {
+        final Map<String, String> names = versioned.get(jar);
+        final String entry = names != null ? names.get(name) : null;
+        return entry != null ? entry : name;
+    }
+
+    @Override
+    protected Class<?> findClass(final String name) throws ClassNotFoundException {
+        final String path = name.replace('.', '/').concat(".class");
+        final NestedArchive.Jar jar = index.get(path);
+        if (jar == null) {
+            try {
+                return super.findClass(name);
+            } catch (final ClassNotFoundException exception) {
+                FlightRecorder.CLASS_LOOKUP_MISS.commit(name);
+                throw exception;
+            }
+        }
+        final byte[] content;
+        try {
+            content = jar.read(entry(jar, path));
+        } catch (final IOException exception) {
+            throw new ClassNotFoundException(name, exception);
+        }
+        final int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            definePackageIfNeeded(name.substring(0, dot), jar);
+        }
+        return defineClass(name, content, 0, content.length, new CodeSource(jar.getURL(), (CodeSigner[]) null));
+    }
+
+    @SuppressWarnings("deprecation")
+    private void definePackageIfNeeded(final String packageName, final NestedArchive.Jar jar) {
+        if (getPackage(packageName) == null) {
+            try {
+                final Manifest manifest = jar.getManifest();
+                if (manifest != null) {
+                    definePackage(packageName, manifest, jar.getURL());
+                } else {
+                    definePackage(packageName, null, null, null, null, null, null, null);
+                }
+            } catch (final IllegalArgumentException exception) {
+                // defined by another thread
+            }
+        }
+    }
+
+    @Override
+    public URL findResource(final String name) {
+        final NestedArchive.Jar jar = index.get(name);
+        if (jar != null) {
+            return jar.getResource(entry(jar, name));
+        }
+        return super.findResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> findResources(final String name) throws IOException {
+        final List<URL> urls = new ArrayList<>();
+        for (final NestedArchive.Jar jar : archive.getJars()) {
+            final URL url = jar.getResource(entry(jar, name));
+            if (url != null) {
+                urls.add(url);
+            }
+        }
+        urls.addAll(Collections.list(super.findResources(name)));
+        return Collections.enumeration(urls);
+    }
+
+    @Override
+    protected String findLibrary(final String libname) {
+        final File natives = new File(home, "lib-natives");
+        String libPath = JniLoader.findLibrary(natives, libname);
+        if (libPath == null) {
+            libPath = extractLibrary(libname, natives);
+            if (libPath == null) {
+                libPath = JniLoader.findLibraryInClassPath(libname, natives);
+                if (libPath == null) {
+                    return super.findLibrary(libname);
+                }
+            }
+        }
+        return libPath;
+    }
+
+    /**
+     * Extract a native library of archive.
+     *
+     * @param libname library name
+     * @param natives destination directory
+     * @return path of extracted library or null if not found.
+     */
+    private String extractLibrary(final String libname, final File natives) {
+        final String systemLibName = System.mapLibraryName(libname);
+        final ZipDirectory.Entry entry = archive.getLibrary(systemLibName);
+        if (entry == null) {
+            return null;
+        }
+        final File lib = new File(natives, systemLibName);
+        try {
+            Files.createDirectories(natives.toPath());
+            final File temp = File.createTempFile(systemLibName, ".tmp", natives);
+            Files.write(temp.toPath(), archive.getDirectory().read(entry));
+            Files.move(temp.toPath(), lib.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException exception) {
+            Console.WARNING("Unable to extract native library '" + systemLibName + "'", exception);
+            return null;
+        }
+        Console.VERBOSE(() -> "Library '" + libname + "' extracted ('" + lib.getAbsolutePath() + "')");
+        return lib.getAbsolutePath();
+    }
+}
@@ -19,12 +19,22 @@
  */
 package org.intelligentsia.keystone.boot;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 
 /**
  * Based on value found : http://lopica.sourceforge.net/os.html. The purpose of
  * this class if to determine which platform is used.
  *
+ * Platform is "{os}-{arch}", like "linux-x86_64", "linux-aarch64", "mac-aarch64" or "windows-x86_64". A native variant is a platform
+ * followed by CPU features required, like "linux-x86_64-avx2" (features are read from "/proc/cpuinfo" on Linux only).
+ *
  * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
  */
 public class OSDetector {
@@ -34,6 +44,11 @@ public class OSDetector {
      */
     private static final Name name;
 
+    /**
+     * Current architecture, normalized.
+     */
+    private static final String arch = OSDetector.normalize(System.getProperty("os.arch", ""));
+
     /**
      * Initialization o class loading.
      */
@@ -76,6 +91,100 @@ public class OSDetector {
         return OSDetector.name;
     }
 
+    /**
+     * @return current architecture: "x86_64", "x86", "aarch64", "arm" or value of "os.arch".
+     */
+    public static String getArch() {
+        return OSDetector.arch;
+    }
+
+    /**
+     * @return current platform, like "linux-x86_64".
+     */
+    public static String getPlatform() {
+        return OSDetector.name.name().toLowerCase(Locale.ENGLISH) + "-" + OSDetector.arch;
+    }
+
+    /**
+     * @return CPU features of host in lower case (like "avx2", "asimd"), empty if unknown.
+     */
+    public static Set<String> getFeatures() {
+        return Features.FEATURES;
+    }
+
+    /**
+     * Rank a native variant: the higher rank, the faster variant.
+     *
+     * @param variant variant name, like "linux-x86_64-avx2"
+     * @return -1 if variant is not supported by host, otherwise number of CPU features required by variant.
+     */
+    public static int rank(final String variant) {
+        final String platform = OSDetector.getPlatform();
+        if (variant.equals(platform)) {
+            return 0;
+        }
+        if (!variant.startsWith(platform + "-")) {
+            return -1;
+        }
+        final String[] features = variant.substring(platform.length() + 1).split("-");
+        for (final String feature : features) {
+            if (!Features.FEATURES.contains(feature.toLowerCase(Locale.ENGLISH))) {
+                return -1;
+            }
+        }
+        return features.length;
+    }
+
+    private static String normalize(final String value) {
+        final String arch = value.toLowerCase(Locale.ENGLISH);
+        if ("amd64".equals(arch) || "x86_64".equals(arch) || "x64".equals(arch)) {
+            return "x86_64";
+        }
+        if ("arm64".equals(arch) || "aarch64".equals(arch)) {
+            return "aarch64";
+        }
+        if (arch.matches("i[3-6]86|x86")) {
+            return "x86";
+        }
+        if (arch.startsWith("arm")) {
+            return "arm";
+        }
+        return arch;
+    }
+
+    /**
+     * CPU features, read on first use.
+     */
+    private static final class Features {
+
+        private static final Set<String> FEATURES = Features.read();
+
+        private static Set<String> read() {
+            final Set<String> features = new HashSet<>();
+            final File cpuinfo = new File("/proc/cpuinfo");
+            if (OSDetector.isLinux() && cpuinfo.isFile()) {
+                try {
+                    for (final String line : Files.readAllLines(cpuinfo.toPath(), StandardCharsets.ISO_8859_1)) {
+                        // "flags" on x86, "Features" on arm: first processor is enough
+                        final int colon = line.indexOf(':');
+                        final String key = colon > 0 ? line.substring(0, colon).trim() : "";
+                        if ("flags".equals(key) || "Features".equals(key)) {
+                            for (final String feature : line.substring(colon + 1).trim().split("\\s+")) {
+                                if (!feature.isEmpty()) {
+                                    features.add(feature.toLowerCase(Locale.ENGLISH));
+                                }
+                            }
+                            break;
+                        }
+                    }
+                } catch (final IOException exception) {
+                    Console.VERBOSE("Unable to read CPU features", exception);
+                }
+            }
+            return Collections.unmodifiableSet(features);
+        }
+    }
+
     /**
      * Operating System Name.
      *
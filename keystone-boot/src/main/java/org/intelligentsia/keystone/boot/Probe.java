@@ -0,0 +1,58 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.util.Map;
+
+/**
+ * Probe is a main class which print a readiness marker on standard output and return: launched with "--Main-Class=" option in place
+ * of application main class, it measure how long bootstrap takes before entering main.
+ *
+ * With option "--Probe.mainClass=name", application main class is loaded (not initialized) before marker is printed.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class Probe {
+
+    /**
+     * Readiness marker.
+     */
+    public static final String MARKER = "KEYSTONE-PROBE-READY";
+
+    private Probe() {
+        super();
+    }
+
+    /**
+     * Main methods.
+     *
+     * @param args main arguments
+     * @throws ClassNotFoundException if application main class is not found.
+     */
+    public static void main(final String[] args) throws ClassNotFoundException {
+        final Map<String, String> arguments = Arguments.loadArguments(args);
+        final String mainClass = Arguments.getStringArgument(arguments, "Probe.mainClass", null);
+        if (mainClass != null) {
+            Class.forName(mainClass, false, Thread.currentThread().getContextClassLoader());
+        }
+        System.out.println(Probe.MARKER);
+        System.out.flush();
+    }
+}
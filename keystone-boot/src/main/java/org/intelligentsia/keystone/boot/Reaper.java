@@ -0,0 +1,215 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reaper delete directories without blocking startup or shutdown.
+ *
+ * A directory is first renamed in a tombstone ({home}/.keystone-tombstone-*), which take a constant time. Tombstones are then
+ * deleted by parallel file tree walkers: in a background daemon thread on boot, or in shutdown hook within a time budget. What is
+ * not deleted before budget is exceeded will be reaped on next boot.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class Reaper {
+
+    /**
+     * Tombstone name prefix, located in {home}.
+     */
+    public static final String TOMBSTONE = ".keystone-tombstone-";
+
+    private static final AtomicBoolean RUNNING = new AtomicBoolean(false);
+
+    private Reaper() {
+        super();
+    }
+
+    /**
+     * Rename specified directory in a tombstone.
+     *
+     * @param home home directory, which receive tombstone
+     * @param directory directory to bury
+     * @return tombstone, or null if directory does not exists or can not be renamed (files in use on some file system).
+     */
+    public static File bury(final File home, final File directory) {
+        if (!directory.exists()) {
+            return null;
+        }
+        final File tombstone = new File(home, Reaper.TOMBSTONE + directory.getName() + "-"
+                + Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE));
+        try {
+            Files.move(directory.toPath(), tombstone.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return tombstone;
+        } catch (final IOException | UnsupportedOperationException exception) {
+            Console.VERBOSE("Unable to bury " + directory.getPath(), exception);
+            return null;
+        }
+    }
+
+    /**
+     * @param home home directory
+     * @return tombstones of specified home directory.
+     */
+    public static List<File> tombstones(final File home) {
+        final File[] files = home.listFiles((dir, name) -> name.startsWith(Reaper.TOMBSTONE));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        final List<File> tombstones = new ArrayList<>(files.length);
+        Collections.addAll(tombstones, files);
+        return tombstones;
+    }
+
+    /**
+     * Delete tombstones of specified home in a background daemon thread, if none is running.
+     *
+     * @param home home directory
+     * @param threads number of walkers
+     */
+    public static void reapInBackground(final File home, final int threads) {
+        if (Reaper.tombstones(home).isEmpty() || !Reaper.RUNNING.compareAndSet(false, true)) {
+            return;
+        }
+        final Thread thread = new Thread(() -> {
+            try {
+                Reaper.reap(home, threads, 0);
+            } finally {
+                Reaper.RUNNING.set(false);
+            }
+        }, "keystone-reaper");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Delete tombstones of specified home.
+     *
+     * @param home home directory
+     * @param threads number of walkers
+     * @param budget time budget in milliseconds, no limit if 0 or less
+     * @return true if all tombstones are deleted.
+     */
+    public static boolean reap(final File home, final int threads, final long budget) {
+        return Reaper.delete(Reaper.tombstones(home), threads, budget);
+    }
+
+    /**
+     * Delete specified directories, each top level file tree is deleted by a walker.
+     *
+     * @param directories directories to delete
+     * @param threads number of walkers
+     * @param budget time budget in milliseconds, no limit if 0 or less
+     * @return true if all directories are deleted.
+     */
+    public static boolean delete(final List<File> directories, final int threads, final long budget) {
+        if (directories.isEmpty()) {
+            return true;
+        }
+        final long deadline = budget > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget) : Long.MAX_VALUE;
+        final List<Path> roots = new ArrayList<>();
+        for (final File directory : directories) {
+            final File[] children = directory.listFiles();
+            if (children != null) {
+                for (final File child : children) {
+                    roots.add(child.toPath());
+                }
+            }
+        }
+        final int size = Math.max(1, Math.min(threads, roots.size()));
+        final ForkJoinPool pool = new ForkJoinPool(size);
+        try {
+            for (final Path root : roots) {
+                pool.execute(() -> Reaper.walk(root, deadline));
+            }
+            pool.shutdown();
+            final long timeout = budget > 0 ? Math.max(0, deadline - System.nanoTime()) : Long.MAX_VALUE;
+            if (!pool.awaitTermination(timeout, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            pool.shutdownNow();
+        }
+        boolean deleted = true;
+        for (final File directory : directories) {
+            deleted &= Reaper.walk(directory.toPath(), deadline);
+        }
+        return deleted;
+    }
+
+    /**
+     * Delete a file tree, until deadline. Files deleted by another process are ignored.
+     *
+     * @return true if file tree is deleted.
+     */
+    private static boolean walk(final Path root, final long deadline) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                    Files.deleteIfExists(file);
+                    return System.nanoTime() < deadline ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException exception) throws IOException {
+                    if (exception instanceof NoSuchFileException) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    throw exception;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(final Path dir, final IOException exception) throws IOException {
+                    if (System.nanoTime() >= deadline) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    Files.deleteIfExists(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final NoSuchFileException exception) {
+            // reaped by another process
+        } catch (final IOException exception) {
+            Console.VERBOSE("Unable to delete " + root, exception);
+        }
+        return !Files.exists(root);
+    }
+}
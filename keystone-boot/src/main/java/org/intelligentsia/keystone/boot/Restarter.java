@@ -27,7 +27,9 @@ import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Restarter Utility which can run on WINDOWS, LINUX and MAC operating system.
@@ -42,6 +44,20 @@ public class Restarter {
      */
     private static final String SUN_JAVA_COMMAND = "sun.java.command";
 
+    /**
+     * Keystone arguments, used to override JVM ergonomics.
+     */
+    private static Map<String, String> arguments = new HashMap<String, String>();
+
+    /**
+     * Initialize JVM ergonomics directive (see {@link Ergonomics}).
+     *
+     * @param arguments
+     */
+    public static void initialize(final Map<String, String> arguments) {
+        Restarter.arguments = arguments;
+    }
+
     /**
      * Restart the current Java application
      *
@@ -116,6 +132,56 @@ public class Restarter {
         System.exit(0);
     }
 
+    /**
+     * Relaunch current application in a child JVM which inherit standard streams, and wait for it. Child is destroyed if this JVM is
+     * stopped.
+     *
+     * @param options
+     *            extra JVM options of child
+     * @param afterExit
+     *            code to run once child has exited (can be null)
+     * @param parameters
+     *            parameter to launch application like "-jar", "application.jar"
+     * @return exit code of child.
+     * @throws IOException
+     *             if child cannot be started
+     * @throws InterruptedException
+     *             if interrupted while waiting for child
+     */
+    public static int relaunch(final List<String> options, final Runnable afterExit, final String... parameters)
+            throws IOException, InterruptedException {
+        final List<String> commands = new ArrayList<String>();
+        commands.add(new File(new File(System.getProperty("java.home"), "bin"), OSDetector.isWindows() ? "java.exe" : "java").getPath());
+        final Ergonomics ergonomics = Ergonomics.detect(arguments);
+        for (final String option : ergonomics.options(ManagementFactory.getRuntimeMXBean().getInputArguments())) {
+            if (!AppCds.isOption(option) && !MemoryStore.isOption(option)) {
+                commands.add(option);
+            }
+        }
+        commands.addAll(options);
+        commands.addAll(Arrays.asList(parameters));
+        Console.VERBOSE(() -> "Relaunch " + commands);
+        final Process process = new ProcessBuilder(commands).inheritIO().start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (process.isAlive()) {
+                process.destroy();
+                try {
+                    process.waitFor();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (afterExit != null) {
+                    afterExit.run();
+                }
+            }
+        }, "keystone-relaunch"));
+        final int code = process.waitFor();
+        if (afterExit != null) {
+            afterExit.run();
+        }
+        return code;
+    }
+
     /**
      * @return the java command according operating system.
      */
@@ -142,71 +208,21 @@ public class Restarter {
     }
 
     /**
-     * Returns the input arguments passed to the Java virtual machine and set
-     * some default.
+     * Returns the input arguments passed to the Java virtual machine, with
+     * options synthesized by {@link Ergonomics}.
      *
      * @return a list of String arguments.
      */
     private static List<String> getJVMArgument() {
-        final List<String> lst = ManagementFactory.getRuntimeMXBean().getInputArguments();
-        final ArrayList<String> jvmArguments = new ArrayList<String>();
-        boolean xmxset = false;
-        boolean xmsset = false;
-        boolean maxPermSize = false;
-        boolean useconc = false;
-        boolean minheap = false;
-        boolean maxheap = false;
-        final boolean classpath = false;
-        for (final String h : lst) {
-            // if it's the agent argument : we ignore it otherwise the
-            // address of the old application and the new one will be in
-            // conflict
-            if (!h.contains("-agentlib")) {
-                if (h.contains("Xmx")) {
-                    xmxset = true;
-                    // check max memory
-                    if (Runtime.getRuntime().maxMemory() < 533000000) {
-                        jvmArguments.add("-Xmx512m");
-                        continue;
-                    }
-                } else if (h.contains("Xms")) {
-                    xmsset = true;
-                } else if (h.contains("XX:+useconc")) {
-                    useconc = true;
-                } else if (h.contains("minheapfree")) {
-                    minheap = true;
-                } else if (h.contains("maxheapfree")) {
-                    maxheap = true;
-                } else if (h.contains("-XX:MaxPermSize")) {
-                    maxPermSize = true;
-                }
-                jvmArguments.add(h);
-            }
-        }
-        // set default value
-        if (!xmsset) {
-            jvmArguments.add("-Xms64m");
-        }
-        if (!xmxset) {
-            jvmArguments.add("-Xmx512m");
-        }
-        if (!maxPermSize) {
-            jvmArguments.add("-XX:MaxPermSize=128M");
-        }
-        if (!useconc) {
-            jvmArguments.add("-XX:+UseConcMarkSweepGC");
-        }
-        if (!minheap) {
-            jvmArguments.add("-XX:MinHeapFreeRatio=0");
-        }
-        if (!maxheap) {
-            jvmArguments.add("-XX:MaxHeapFreeRatio=0");
-        }
-        if (!classpath) {
-            final String cp = System.getProperty("java.class.path");
-            if ((cp != null) && !"".equals(cp)) {
-                jvmArguments.add("-cp \"" + System.getProperty("java.class.path") + "\"");
-            }
+        final Ergonomics ergonomics = Ergonomics.detect(arguments);
+        Console.VERBOSE(ergonomics.toString());
+        final List<String> jvmArguments = ergonomics.options(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        // restarted application choose its class data sharing archive again
+        jvmArguments.removeIf(AppCds::isOption);
+        jvmArguments.removeIf(MemoryStore::isOption);
+        final String cp = System.getProperty("java.class.path");
+        if ((cp != null) && !"".equals(cp)) {
+            jvmArguments.add("-cp \"" + cp + "\"");
         }
         return jvmArguments;
     }
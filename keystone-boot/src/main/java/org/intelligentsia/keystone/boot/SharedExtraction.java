@@ -0,0 +1,251 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * SharedExtraction let several processes explode the same archive in the same home directory.
+ *
+ * Each archive version (see {@link ExtractionCache#fingerprint(File)}) is exploded in {home}/versions/{id}/lib:
+ * <ul>
+ * <li>a process explode version in a private staging directory, and publish it with an atomic rename</li>
+ * <li>extraction is serialized by an exclusive lock on file {home}/versions/{id}.lock: other processes wait for it, and reuse
+ * published version</li>
+ * <li>each process which use a version hold a shared lock on file {home}/versions/{id}.use until it exit</li>
+ * <li>a new version hard link unchanged files of last published version: only added or modified libraries are exploded</li>
+ * <li>a version is removed only if no live process hold its lock files: it is renamed in a tombstone (see {@link Reaper})</li>
+ * <li>a version invalidated while in use (see {@link ExtractionCache#invalidate(File)}) is renamed in {id}.stale-*, and
+ * published again</li>
+ * </ul>
+ * Lock files are never removed: a process could be waiting on them.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class SharedExtraction {
+
+    /**
+     * Folder of versions, located in {home}.
+     */
+    public static final String VERSIONS = "versions";
+
+    private static final String LOCK = ".lock";
+    private static final String USE = ".use";
+    private static final String STAGING = ".staging-";
+    private static final String STALE = ".stale-";
+
+    /**
+     * Usage locks held by this JVM, by version id. File locks are held on behalf of the whole JVM: a second lock on the same file
+     * would fail.
+     */
+    private static final Map<String, FileLock> USES = new HashMap<>();
+
+    private SharedExtraction() {
+        super();
+    }
+
+    /**
+     * Explode a version.
+     */
+    public interface Extractor {
+
+        /**
+         * Explode libraries and store an {@link ExtractionCache} of version fingerprint: a version without this stamp is not
+         * complete.
+         *
+         * @param lib library directory to fill
+         * @param last library directory of last published version, from which unchanged files can be hard linked (can be null)
+         * @throws IOException if an error occurs.
+         */
+        void explode(File lib, File last) throws IOException;
+    }
+
+    /**
+     * @param fingerprint archive fingerprint
+     * @return version identifier of specified fingerprint.
+     */
+    public static String id(final String fingerprint) {
+        final CRC32 crc = new CRC32();
+        crc.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Publish a version if needed, and hold it until {@link #release()}.
+     *
+     * @param home home directory
+     * @param fingerprint archive fingerprint
+     * @param extractor extractor called if version is not published
+     * @return version directory, which contains a "lib" folder.
+     * @throws IOException if version cannot be published.
+     */
+    public static synchronized File publish(final File home, final String fingerprint, final Extractor extractor) throws IOException {
+        final File versions = new File(home, SharedExtraction.VERSIONS);
+        Files.createDirectories(versions.toPath());
+        final String id = SharedExtraction.id(fingerprint);
+        final File version = new File(versions, id);
+        try (FileChannel channel = SharedExtraction.open(new File(versions, id + SharedExtraction.LOCK))) {
+            final FileLock lock = channel.lock();
+            try {
+                final ExtractionCache published = ExtractionCache.load(new File(version, "lib"));
+                if ((published != null) && published.isUpToDate(fingerprint)) {
+                    Console.VERBOSE(() -> "Reuse version " + id);
+                } else {
+                    if (version.exists()) {
+                        // crash, invalidation or fingerprint collision
+                        if (SharedExtraction.inUse(versions, id)) {
+                            // set aside until its users exit
+                            final File stale = Files.createTempDirectory(versions.toPath(), id + SharedExtraction.STALE).toFile();
+                            Files.delete(stale.toPath());
+                            Files.move(version.toPath(), stale.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                            Console.VERBOSE(() -> "Version " + id + " is stale");
+                        } else {
+                            ExtractionManager.delete(version);
+                        }
+                    }
+                    final File staging = Files.createTempDirectory(versions.toPath(), id + SharedExtraction.STAGING).toFile();
+                    try {
+                        final File lib = new File(staging, "lib");
+                        Files.createDirectories(lib.toPath());
+                        extractor.explode(lib, SharedExtraction.last(versions, id));
+                        Files.move(staging.toPath(), version.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    } finally {
+                        ExtractionManager.delete(staging);
+                    }
+                    Console.VERBOSE(() -> "Version " + id + " published");
+                }
+                SharedExtraction.use(versions, id);
+            } finally {
+                lock.release();
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Release all versions used by this process.
+     */
+    public static synchronized void release() {
+        for (final FileLock lock : SharedExtraction.USES.values()) {
+            ExtractionManager.close(lock.channel());
+        }
+        SharedExtraction.USES.clear();
+    }
+
+    /**
+     * Remove versions, stale and staging directories which are not used by any live process.
+     *
+     * @param home home directory
+     */
+    public static synchronized void reap(final File home) {
+        final File versions = new File(home, SharedExtraction.VERSIONS);
+        final File[] files = versions.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            if (!file.isDirectory()) {
+                continue;
+            }
+            final int staging = file.getName().indexOf(SharedExtraction.STAGING);
+            final int stale = file.getName().indexOf(SharedExtraction.STALE);
+            final String id = file.getName().substring(0, staging >= 0 ? staging : stale >= 0 ? stale : file.getName().length());
+            try (FileChannel channel = SharedExtraction.open(new File(versions, id + SharedExtraction.LOCK));
+                    FileLock lock = channel.tryLock()) {
+                // nobody is exploding this version: staging directory is left by a dead process
+                if ((lock != null) && ((staging >= 0) || !SharedExtraction.inUse(versions, id))) {
+                    Console.VERBOSE(() -> "Removing: " + file.getName());
+                    if (Reaper.bury(home, file) == null) {
+                        ExtractionManager.delete(file);
+                    }
+                }
+            } catch (final IOException | OverlappingFileLockException exception) {
+                // in use by this JVM, or not lockable
+            }
+        }
+    }
+
+    /**
+     * Last published version other than specified one. It is not locked: a concurrent reaper can remove it while it is read, and
+     * files which cannot be linked are exploded.
+     *
+     * @return library directory of the most recent complete version, or null if none.
+     */
+    private static File last(final File versions, final String id) {
+        File last = null;
+        final File[] files = versions.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                final File lib = new File(file, "lib");
+                if (file.isDirectory() && !file.getName().equals(id) && (file.getName().indexOf(SharedExtraction.STAGING) < 0)
+                        && new File(lib, ExtractionCache.STAMP).isFile()
+                        && ((last == null) || (file.lastModified() > last.getParentFile().lastModified()))) {
+                    last = lib;
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Hold a shared lock on usage file of a version.
+     */
+    private static void use(final File versions, final String id) throws IOException {
+        if (!SharedExtraction.USES.containsKey(id)) {
+            final FileChannel channel = SharedExtraction.open(new File(versions, id + SharedExtraction.USE));
+            try {
+                SharedExtraction.USES.put(id, channel.lock(0, Long.MAX_VALUE, true));
+            } catch (final IOException exception) {
+                ExtractionManager.close(channel);
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * @return true if a process hold usage file of a version.
+     */
+    private static boolean inUse(final File versions, final String id) throws IOException {
+        if (SharedExtraction.USES.containsKey(id)) {
+            return true;
+        }
+        try (FileChannel channel = SharedExtraction.open(new File(versions, id + SharedExtraction.USE));
+                FileLock lock = channel.tryLock()) {
+            return lock == null;
+        } catch (final OverlappingFileLockException exception) {
+            return true;
+        }
+    }
+
+    private static FileChannel open(final File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+}
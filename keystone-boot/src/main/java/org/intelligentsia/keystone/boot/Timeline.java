@@ -0,0 +1,284 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Timeline record startup phases of BootStrap with nanosecond timings: arguments loading, JVM check, home resolution, extraction
+ * (with each exploded file and its size), class path computation, class loader creation, main class loading and main entry.
+ *
+ * Timeline of current boot is available with {@link #get()}, and is published before entering main:
+ * <ul>
+ * <li>as JSON in system property "BootStrap.timeline"</li>
+ * <li>in a JSON file if 'BootStrap.timelineFile' is specified</li>
+ * </ul>
+ * Start of each event is relative to timeline origin (first event of BootStrap).
+ *
+ * <pre>
+ * {"origin":1500000000000,"events":[
+ * {"name":"arguments","thread":"main","start":0,"duration":1210000,"bytes":-1},
+ * {"name":"extract:commons-lang-2.6.jar","thread":"keystone-extraction-0","start":3210000,"duration":2210000,"bytes":284220}]}
+ * </pre>
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class Timeline {
+
+    private static volatile Timeline current = new Timeline(System.nanoTime(), null);
+
+    /**
+     * Origin as nano time.
+     */
+    private final long origin;
+    /**
+     * Origin as epoch time in milliseconds.
+     */
+    private final long originTime;
+    private final File file;
+    private final List<Event> events = new ArrayList<>();
+
+    private Timeline(final long origin, final File file) {
+        super();
+        this.origin = origin;
+        this.originTime = System.currentTimeMillis() - ((System.nanoTime() - origin) / 1000000);
+        this.file = file;
+    }
+
+    /**
+     * Start a new timeline.
+     *
+     * @param arguments
+     * @param origin origin of timeline as {@link System#nanoTime()}
+     * @return new current timeline.
+     */
+    public static Timeline initialize(final Map<String, String> arguments, final long origin) {
+        final String path = Arguments.getStringArgument(arguments, "BootStrap.timelineFile", null);
+        final Timeline timeline = new Timeline(origin, path != null ? new File(path) : null);
+        Timeline.current = timeline;
+        return timeline;
+    }
+
+    /**
+     * @return timeline of current boot.
+     */
+    public static Timeline get() {
+        return Timeline.current;
+    }
+
+    /**
+     * Begin an event. Event is added on timeline when it ends.
+     *
+     * @param name event name
+     * @return event.
+     */
+    public Event begin(final String name) {
+        return begin(name, System.nanoTime());
+    }
+
+    /**
+     * Begin an event at specified time. Event is added on timeline when it ends.
+     *
+     * @param name event name
+     * @param nanoTime start of event as {@link System#nanoTime()}
+     * @return event.
+     */
+    public Event begin(final String name, final long nanoTime) {
+        return new Event(name, Thread.currentThread().getName(), nanoTime - origin);
+    }
+
+    /**
+     * Add an instant event (without duration).
+     *
+     * @param name event name
+     */
+    public void mark(final String name) {
+        begin(name).end();
+    }
+
+    /**
+     * @return events, in order of their end.
+     */
+    public List<Event> getEvents() {
+        synchronized (events) {
+            return Collections.unmodifiableList(new ArrayList<>(events));
+        }
+    }
+
+    /**
+     * @param name event name
+     * @return first event with specified name, or null if none.
+     */
+    public Event getEvent(final String name) {
+        for (final Event event : getEvents()) {
+            if (event.name.equals(name)) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Publish timeline in system property "BootStrap.timeline" and in timeline file if any.
+     */
+    public void publish() {
+        final String json = toJson();
+        System.setProperty("BootStrap.timeline", json);
+        if (file != null) {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                writer.write(json);
+            } catch (final IOException exception) {
+                Console.WARNING("Unable to write timeline in " + file.getPath() + ": " + exception.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return this timeline as JSON.
+     */
+    public String toJson() {
+        final StringBuilder builder = new StringBuilder(256);
+        builder.append("{\"origin\":").append(originTime).append(",\"events\":[");
+        boolean first = true;
+        for (final Event event : getEvents()) {
+            if (!first) {
+                builder.append(',');
+            }
+            first = false;
+            builder.append("\n{\"name\":");
+            Timeline.quote(builder, event.name);
+            builder.append(",\"thread\":");
+            Timeline.quote(builder, event.thread);
+            builder.append(",\"start\":").append(event.start);
+            builder.append(",\"duration\":").append(event.duration);
+            builder.append(",\"bytes\":").append(event.bytes).append('}');
+        }
+        return builder.append("]}").toString();
+    }
+
+    private static void quote(final StringBuilder builder, final String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if ((c == '"') || (c == '\\')) {
+                builder.append('\\').append(c);
+            } else if (c < ' ') {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    /**
+     * An event of timeline.
+     */
+    public final class Event {
+
+        private final String name;
+        private final String thread;
+        private final long start;
+        private volatile long duration = -1;
+        private volatile long bytes = -1;
+
+        private Event(final String name, final String thread, final long start) {
+            super();
+            this.name = name;
+            this.thread = thread;
+            this.start = start;
+        }
+
+        /**
+         * End this event and add it on timeline.
+         *
+         * @return this event.
+         */
+        public Event end() {
+            if (duration < 0) {
+                duration = System.nanoTime() - origin - start;
+                synchronized (events) {
+                    events.add(this);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * End this event with a size, and add it on timeline.
+         *
+         * @param size size in bytes
+         * @return this event.
+         */
+        public Event end(final long size) {
+            this.bytes = size;
+            return end();
+        }
+
+        /**
+         * @return event name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return name of thread which has begun this event.
+         */
+        public String getThread() {
+            return thread;
+        }
+
+        /**
+         * @return start in nanoseconds, relative to timeline origin.
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * @return duration in nanoseconds, -1 if event is not ended.
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * @return size in bytes, -1 if none.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
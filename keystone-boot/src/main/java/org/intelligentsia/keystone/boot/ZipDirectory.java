@@ -0,0 +1,274 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * ZipDirectory is a minimal reader of zip central directory over a {@link ByteBuffer}.
+ *
+ * Buffer can be a memory mapped archive file or an archive loaded in memory. Only what Keystone needs is supported: entries
+ * stored or deflated, no zip64 extension.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class ZipDirectory {
+
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int LOC_HEADER = 30;
+    private static final int CEN_HEADER = 46;
+    private static final int END_HEADER = 22;
+    private static final int MAX_COMMENT = 0xFFFF;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    /**
+     * Archive content, little endian.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Entries in archive order.
+     */
+    private final Map<String, Entry> entries;
+
+    private ZipDirectory(final ByteBuffer buffer, final Map<String, Entry> entries) {
+        super();
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    /**
+     * Read central directory of specified archive content.
+     *
+     * @param content archive content
+     * @return a ZipDirectory instance.
+     * @throws IOException if content is not a supported zip archive.
+     */
+    public static ZipDirectory parse(final ByteBuffer content) throws IOException {
+        final ByteBuffer buffer = content.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        final int end = ZipDirectory.findEnd(buffer);
+        final int total = buffer.getShort(end + 10) & 0xFFFF;
+        final long size = buffer.getInt(end + 12) & ZipDirectory.ZIP64_MAGIC;
+        final long offset = buffer.getInt(end + 16) & ZipDirectory.ZIP64_MAGIC;
+        if ((total == 0xFFFF) || (size == ZipDirectory.ZIP64_MAGIC) || (offset == ZipDirectory.ZIP64_MAGIC)) {
+            throw new IOException("zip64 archive are not supported");
+        }
+        // archive can be prefixed (self executable archive for example)
+        final int base = (int) (end - size - offset);
+        if (base < 0) {
+            throw new IOException("Invalid central directory");
+        }
+        final Map<String, Entry> entries = new LinkedHashMap<>(total * 2);
+        int position = (int) (base + offset);
+        for (int i = 0; i < total; i++) {
+            if (buffer.getInt(position) != ZipDirectory.CEN_SIGNATURE) {
+                throw new IOException("Invalid central directory entry at " + position);
+            }
+            final int method = buffer.getShort(position + 10) & 0xFFFF;
+            final long crc = buffer.getInt(position + 16) & ZipDirectory.ZIP64_MAGIC;
+            final long compressedSize = buffer.getInt(position + 20) & ZipDirectory.ZIP64_MAGIC;
+            final long uncompressedSize = buffer.getInt(position + 24) & ZipDirectory.ZIP64_MAGIC;
+            final int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+            final int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+            final int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+            final long localOffset = buffer.getInt(position + 42) & ZipDirectory.ZIP64_MAGIC;
+            if ((compressedSize == ZipDirectory.ZIP64_MAGIC) || (uncompressedSize == ZipDirectory.ZIP64_MAGIC)
+                    || (localOffset == ZipDirectory.ZIP64_MAGIC)) {
+                throw new IOException("zip64 archive are not supported");
+            }
+            final byte[] name = new byte[nameLength];
+            final ByteBuffer view = buffer.duplicate();
+            view.position(position + ZipDirectory.CEN_HEADER);
+            view.get(name);
+            final Entry entry = new Entry(new String(name, StandardCharsets.UTF_8), method, crc, compressedSize, uncompressedSize,
+                    base + localOffset);
+            entries.put(entry.name, entry);
+            position += ZipDirectory.CEN_HEADER + nameLength + extraLength + commentLength;
+        }
+        return new ZipDirectory(buffer, entries);
+    }
+
+    /**
+     * @param name entry name
+     * @return entry or null if not found.
+     */
+    public Entry getEntry(final String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * @return all entries in archive order.
+     */
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * @param entry entry
+     * @return a read only view on raw data (compressed or not) of specified entry. No data is copied.
+     * @throws IOException if local header is invalid.
+     */
+    public ByteBuffer getRawData(final Entry entry) throws IOException {
+        final int offset = (int) getDataOffset(entry);
+        final ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit((int) (offset + entry.compressedSize));
+        return view.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param entry entry
+     * @return offset of raw data of specified entry in archive content.
+     * @throws IOException if local header is invalid.
+     */
+    public long getDataOffset(final Entry entry) throws IOException {
+        final int local = (int) entry.localOffset;
+        if (buffer.getInt(local) != ZipDirectory.LOC_SIGNATURE) {
+            throw new IOException("Invalid local header for " + entry.name);
+        }
+        final int nameLength = buffer.getShort(local + 26) & 0xFFFF;
+        final int extraLength = buffer.getShort(local + 28) & 0xFFFF;
+        return local + ZipDirectory.LOC_HEADER + nameLength + extraLength;
+    }
+
+    /**
+     * @param entry entry
+     * @return uncompressed content of specified entry. If entry is stored, content is a view on archive content.
+     * @throws IOException if entry cannot be read.
+     */
+    public ByteBuffer getContent(final Entry entry) throws IOException {
+        if (entry.method == ZipEntry.STORED) {
+            return getRawData(entry);
+        }
+        return ByteBuffer.wrap(read(entry)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param entry entry
+     * @return uncompressed content of specified entry.
+     * @throws IOException if entry cannot be read.
+     */
+    public byte[] read(final Entry entry) throws IOException {
+        final ByteBuffer raw = getRawData(entry);
+        final byte[] result = new byte[(int) entry.size];
+        if (entry.method == ZipEntry.STORED) {
+            raw.get(result);
+            return result;
+        }
+        if (entry.method != ZipEntry.DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.method + " for " + entry.name);
+        }
+        final byte[] input = new byte[raw.remaining()];
+        raw.get(input);
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            int count = 0;
+            while (count < result.length) {
+                final int read = inflater.inflate(result, count, result.length - count);
+                if ((read == 0) && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                count += read;
+            }
+            if (count != result.length) {
+                throw new IOException("Truncated entry " + entry.name);
+            }
+        } catch (final DataFormatException exception) {
+            throw new IOException("Invalid compressed data for " + entry.name, exception);
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    private static int findEnd(final ByteBuffer buffer) throws IOException {
+        final int limit = Math.max(0, buffer.limit() - ZipDirectory.END_HEADER - ZipDirectory.MAX_COMMENT);
+        for (int position = buffer.limit() - ZipDirectory.END_HEADER; position >= limit; position--) {
+            if (buffer.getInt(position) == ZipDirectory.END_SIGNATURE) {
+                return position;
+            }
+        }
+        throw new IOException("End of central directory not found");
+    }
+
+    /**
+     * Entry of a zip central directory.
+     */
+    public static final class Entry {
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localOffset;
+
+        private Entry(final String name, final int method, final long crc, final long compressedSize, final long size,
+                final long localOffset) {
+            super();
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localOffset = localOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
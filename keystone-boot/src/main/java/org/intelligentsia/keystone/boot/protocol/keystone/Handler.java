@@ -0,0 +1,156 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot.protocol.keystone;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+
+import org.intelligentsia.keystone.boot.NestedArchive;
+import org.intelligentsia.keystone.boot.ZipDirectory;
+
+/**
+ * Handler of "keystone" protocol: give access to resources of inner jar libraries.
+ *
+ * URL format is "keystone:/path/of/archive.jar!/META-INF/lib/library.jar!/name".
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class Handler extends URLStreamHandler {
+
+    /**
+     * Protocol name.
+     */
+    public static final String PROTOCOL = "keystone";
+
+    /**
+     * Package prefix to declare in "java.protocol.handler.pkgs".
+     */
+    private static final String PACKAGE_PREFIX = "org.intelligentsia.keystone.boot.protocol";
+
+    private static final String SEPARATOR = "!/";
+
+    private static final Handler INSTANCE = new Handler();
+
+    /**
+     * @param file file part of url
+     * @return a new "keystone" URL.
+     * @throws MalformedURLException
+     */
+    public static URL url(final String file) throws MalformedURLException {
+        return new URL(Handler.PROTOCOL, null, -1, file, Handler.INSTANCE);
+    }
+
+    /**
+     * Register this handler in system property "java.protocol.handler.pkgs", so "keystone" URL can be parsed from their string form.
+     */
+    public static void register() {
+        final String packages = System.getProperty("java.protocol.handler.pkgs");
+        if ((packages == null) || "".equals(packages)) {
+            System.setProperty("java.protocol.handler.pkgs", Handler.PACKAGE_PREFIX);
+        } else if (!packages.contains(Handler.PACKAGE_PREFIX)) {
+            System.setProperty("java.protocol.handler.pkgs", packages + "|" + Handler.PACKAGE_PREFIX);
+        }
+    }
+
+    @Override
+    protected URLConnection openConnection(final URL url) throws IOException {
+        final String file = url.getFile();
+        final int first = file.indexOf(Handler.SEPARATOR);
+        final int second = first < 0 ? -1 : file.indexOf(Handler.SEPARATOR, first + Handler.SEPARATOR.length());
+        if (second < 0) {
+            throw new MalformedURLException("Invalid keystone URL: " + url);
+        }
+        final String path = file.substring(0, first);
+        NestedArchive archive = NestedArchive.get(path);
+        if (archive == null) {
+            archive = NestedArchive.open(new File(URI.create("file:" + path)));
+        }
+        final String jarName = file.substring(first + Handler.SEPARATOR.length(), second);
+        final NestedArchive.Jar jar = archive.getJar(jarName);
+        if (jar == null) {
+            throw new FileNotFoundException(url.toString());
+        }
+        return new Connection(url, archive, jar, file.substring(second + Handler.SEPARATOR.length()));
+    }
+
+    /**
+     * Connection on a resource of an inner jar.
+     */
+    private static final class Connection extends URLConnection {
+
+        private final NestedArchive archive;
+        private final NestedArchive.Jar jar;
+        private final String resource;
+        private byte[] content;
+
+        private Connection(final URL url, final NestedArchive archive, final NestedArchive.Jar jar, final String resource) {
+            super(url);
+            this.archive = archive;
+            this.jar = jar;
+            this.resource = resource;
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (!connected) {
+                if ("".equals(resource)) {
+                    // the inner jar itself
+                    final ZipDirectory.Entry entry = archive.getDirectory().getEntry(jar.getName());
+                    content = archive.getDirectory().read(entry);
+                } else {
+                    content = jar.read(resource);
+                }
+                if (content == null) {
+                    throw new FileNotFoundException(url.toString());
+                }
+                connected = true;
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            try {
+                connect();
+                return content.length;
+            } catch (final IOException exception) {
+                return -1;
+            }
+        }
+
+        @Override
+        public int getContentLength() {
+            return (int) getContentLengthLong();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * AppCdsTest check class data sharing archive management.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class AppCdsTest {
+
+    private File home;
+
+    @Before
+    public void setUp() {
+        home = new File("target" + File.separator + "cds-home");
+        ExtractionManager.delete(home);
+        home.mkdirs();
+    }
+
+    @Test
+    public void disabledByDefault() {
+        final Map<String, String> arguments = new HashMap<>();
+        Assert.assertFalse(AppCds.isEnabled(arguments));
+        arguments.put("BootStrap.appCds", "true");
+        Assert.assertTrue(AppCds.isEnabled(arguments));
+        Assert.assertTrue(AppCds.isOption("-XX:SharedArchiveFile=a.jsa"));
+        Assert.assertTrue(AppCds.isOption("-XX:ArchiveClassesAtExit=a.jsa"));
+        Assert.assertFalse(AppCds.isOption("-Xmx1g"));
+        // nothing to relaunch
+        Assert.assertNull(AppCds.relaunch(home, new File(home, "missing.jar").getPath(), new String[0]));
+    }
+
+    @Test
+    public void publishReplaceArchiveOfOtherVersion() throws IOException {
+        final File boot = new File(home, "boot.jar");
+        Files.write(boot.toPath(), new byte[] { 1 });
+        final File archive = AppCds.getArchive(home, boot);
+        Assert.assertEquals(home, archive.getParentFile());
+        Assert.assertEquals(archive, AppCds.getArchive(home, boot));
+        final File old = new File(home, "keystone-0.jsa");
+        Files.write(old.toPath(), new byte[] { 0 });
+        final File dump = new File(home, archive.getName() + ".1.tmp");
+        Files.write(dump.toPath(), new byte[] { 2 });
+        AppCds.publish(home, dump, archive);
+        Assert.assertTrue(archive.isFile());
+        Assert.assertFalse(dump.exists());
+        Assert.assertFalse(old.exists());
+        // already published
+        AppCds.publish(home, dump, archive);
+        Assert.assertTrue(archive.isFile());
+    }
+
+    @Test
+    public void classListOfSameJvmOnly() throws IOException {
+        final File meta = new File(home, "META-INF");
+        meta.mkdirs();
+        Files.write(new File(home, AppCds.CLASS_LIST).toPath(),
+                Arrays.asList(AppCdsTest.class.getName(), "missing.Class", "", Restarter.class.getName()), StandardCharsets.UTF_8);
+        final File descriptor = new File(home, AppCds.DESCRIPTOR);
+        Files.write(descriptor.toPath(), Arrays.asList("java.specification.version=1.1"), StandardCharsets.UTF_8);
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { home.toURI().toURL() }, AppCdsTest.class.getClassLoader())) {
+            // ignored silently
+            Assert.assertFalse(AppCds.hasClassList(loader));
+            Files.write(descriptor.toPath(),
+                    Arrays.asList("java.specification.version=" + System.getProperty("java.specification.version")),
+                    StandardCharsets.UTF_8);
+            Assert.assertTrue(AppCds.hasClassList(loader));
+            Assert.assertEquals(2, AppCds.train(loader));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * BootPlanTest check {@link BootPlan} format.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class BootPlanTest {
+
+    @Test
+    public void writeAndRead() throws IOException {
+        final BootPlan plan = new BootPlan();
+        plan.setMainClass("org.intelligentsia.Main");
+        plan.addLibrary("z-application.jar");
+        plan.addLibrary("a-dependency.jar");
+        plan.addLibrary("z-application.jar");
+        plan.addNative("x86/libfoo.so");
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        plan.write(output);
+
+        final BootPlan read = BootPlan.read(new ByteArrayInputStream(output.toByteArray()));
+        Assert.assertEquals("org.intelligentsia.Main", read.getMainClass());
+        Assert.assertEquals(Arrays.asList("z-application.jar", "a-dependency.jar"), read.getLibraries());
+        Assert.assertEquals("x86/libfoo.so", read.getNative("libfoo.so"));
+        Assert.assertNull(read.getNative("foo.so"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectUnknownFormat() throws IOException {
+        BootPlan.read(new ByteArrayInputStream("Keystone-Plan-Version: 2.0\n".getBytes("UTF-8")));
+    }
+}
@@ -21,6 +21,7 @@ package org.intelligentsia.keystone.boot;
 
 import java.io.File;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
@@ -44,4 +45,11 @@ public class BootStrapTest {
 		BootStrap.main(new String[] { "--Main-Class=" + MainExternalCheck.class.getName(), "--BootStrap.explodeDirectory=." + File.separator + "target" + File.separator + "test-home",
 				"--BootStrap.extraLibrariesFolderPath=src" + File.separator + "external-resources-test" });
 	}
+
+	@Test
+	public void testReload() throws Exception {
+		BootStrap.main(new String[] { "--Main-Class=" + MainReload.class.getName() });
+		Assert.assertEquals(2, MainReload.starts);
+		Assert.assertEquals(1, MainReload.stops);
+	}
 }
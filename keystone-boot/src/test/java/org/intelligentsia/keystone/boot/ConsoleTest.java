@@ -0,0 +1,78 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * ConsoleTest check asynchronous console.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class ConsoleTest {
+
+    @Test
+    public void writeInOrder() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Console.setLog(new PrintStream(output, false, "UTF-8"));
+        Console.setInfo(Boolean.TRUE);
+        try {
+            // more lines than buffer capacity
+            for (int i = 0; i < 5000; i++) {
+                Console.INFO("line " + i);
+            }
+            Console.flush();
+        } finally {
+            Console.setLog(null);
+        }
+        final String[] lines = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\\r?\\n");
+        Assert.assertEquals(5000, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            Assert.assertTrue(lines[i], lines[i].endsWith(" GMT, BootStrap Info: line " + i));
+        }
+    }
+
+    @Test
+    public void formatDateLikeSimpleDateFormat() {
+        final SimpleDateFormat format = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss S", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        for (final long time : new long[] { 1500000000007L, 1500000000070L, 1500000000700L }) {
+            Assert.assertEquals(format.format(new Date(time)) + " GMT", Console.FORMATTER.format(Instant.ofEpochMilli(time)));
+        }
+    }
+
+    @Test
+    public void disabledLevelDoNotBuildMessage() {
+        Console.setVerbose(Boolean.FALSE);
+        Console.VERBOSE(() -> {
+            throw new AssertionError("message built");
+        });
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ErgonomicsTest check cgroup limits and JVM options synthesis.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class ErgonomicsTest {
+
+    private File cgroup;
+
+    @Before
+    public void setUp() {
+        cgroup = new File("target" + File.separator + "cgroup");
+        ExtractionManager.delete(cgroup);
+        cgroup.mkdirs();
+    }
+
+    @Test
+    public void readCgroupV2() throws IOException {
+        write("memory.max", "536870912");
+        write("cpu.max", "150000 100000");
+        Assert.assertEquals(536870912L, Ergonomics.memoryLimit(cgroup));
+        Assert.assertEquals(1.5d, Ergonomics.cpuLimit(cgroup), 0.001d);
+        write("memory.max", "max");
+        write("cpu.max", "max 100000");
+        Assert.assertEquals(-1L, Ergonomics.memoryLimit(cgroup));
+        Assert.assertEquals(-1d, Ergonomics.cpuLimit(cgroup), 0.001d);
+    }
+
+    @Test
+    public void readCgroupV1() throws IOException {
+        write("memory/memory.limit_in_bytes", "9223372036854771712");
+        write("cpu,cpuacct/cpu.cfs_quota_us", "200000");
+        write("cpu,cpuacct/cpu.cfs_period_us", "100000");
+        Assert.assertEquals(-1L, Ergonomics.memoryLimit(cgroup));
+        Assert.assertEquals(2d, Ergonomics.cpuLimit(cgroup), 0.001d);
+    }
+
+    @Test
+    public void parseFeatureVersion() {
+        Assert.assertEquals(8, Ergonomics.feature("1.8"));
+        Assert.assertEquals(11, Ergonomics.feature("11"));
+        Assert.assertEquals(17, Ergonomics.feature("17.0"));
+    }
+
+    @Test
+    public void synthesizeForSmallContainer() {
+        final List<String> options = new Ergonomics(new HashMap<String, String>(), 17, 512L * 1024 * 1024, 1.5d)
+                .options(Arrays.asList("-Dfoo=bar", "-XX:MaxPermSize=128M", "-XX:+UseConcMarkSweepGC", "-agentlib:jdwp=x"));
+        Assert.assertEquals(Arrays.asList("-Dfoo=bar", "-XX:MaxRAMPercentage=75.0", "-XX:+UseSerialGC", "-XX:ActiveProcessorCount=2"),
+                options);
+    }
+
+    @Test
+    public void synthesizeForJava8() {
+        final List<String> options = new Ergonomics(new HashMap<String, String>(), 8, 4096L * 1024 * 1024, 4d)
+                .options(Collections.<String> emptyList());
+        Assert.assertEquals(Arrays.asList("-Xmx3072m", "-XX:+UseG1GC"), options);
+    }
+
+    @Test
+    public void overrideChoices() {
+        final Map<String, String> arguments = new HashMap<>();
+        arguments.put("BootStrap.jvm.maxHeap", "1g");
+        arguments.put("BootStrap.jvm.gc", "Parallel");
+        arguments.put("BootStrap.jvm.activeProcessorCount", "4");
+        arguments.put("BootStrap.jvm.options", "-Xss1m -XX:+AlwaysPreTouch");
+        final List<String> options = new Ergonomics(arguments, 11, -1, -1).options(Arrays.asList("-Xms64m"));
+        Assert.assertEquals(
+                Arrays.asList("-Xms64m", "-Xmx1g", "-XX:+UseParallelGC", "-XX:ActiveProcessorCount=4", "-Xss1m", "-XX:+AlwaysPreTouch"),
+                options);
+        // command line win
+        Assert.assertEquals(Arrays.asList("-Xmx2g", "-XX:+UseZGC", "-XX:ActiveProcessorCount=8"),
+                new Ergonomics(new HashMap<String, String>(), 17, 512L * 1024 * 1024, 1d)
+                        .options(Arrays.asList("-Xmx2g", "-XX:+UseZGC", "-XX:ActiveProcessorCount=8")));
+    }
+
+    private void write(final String name, final String content) throws IOException {
+        final File file = new File(cgroup, name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,325 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ExtractionManagerTest check extraction and extraction cache.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class ExtractionManagerTest {
+
+    private File home;
+
+    @Before
+    public void setUp() {
+        home = new File("target" + File.separator + "extraction-home");
+        ExtractionManager.delete(home);
+        home.mkdirs();
+        ExtractionManager.initialize(new HashMap<String, String>());
+    }
+
+    @Test
+    public void explodeArchive() throws IOException {
+        final File archive = archive("archive.jar", "a.jar", "b.jar");
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        Assert.assertTrue(new File(home, "lib/a.jar").isFile());
+        Assert.assertTrue(new File(home, "lib/b.jar").isFile());
+        Assert.assertTrue(ExtractionCache.exists(new File(home, "lib")));
+    }
+
+    @Test
+    public void explodeUnchangedArchiveDoNothing() throws IOException {
+        final File archive = archive("archive.jar", "a.jar");
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        final File a = new File(home, "lib/a.jar");
+        a.setLastModified(1000L);
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        Assert.assertEquals(1000L, a.lastModified());
+    }
+
+    @Test
+    public void explodeChangedArchiveOnlyUpdateChanges() throws IOException {
+        File archive = archive("archive.jar", "a.jar", "b.jar");
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        final File a = new File(home, "lib/a.jar");
+        final Object key = Files.readAttributes(a.toPath(), BasicFileAttributes.class).fileKey();
+        final long lastModified = a.lastModified();
+        archive = archive("archive.jar", "a.jar", "c.jar");
+        archive.setLastModified(archive.lastModified() + 2000L);
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        Assert.assertEquals(key, Files.readAttributes(a.toPath(), BasicFileAttributes.class).fileKey());
+        Assert.assertEquals(lastModified, a.lastModified());
+        Assert.assertFalse(new File(home, "lib/b.jar").exists());
+        Assert.assertTrue(new File(home, "lib/c.jar").isFile());
+    }
+
+    @Test
+    public void shutdownKeepStampedLib() throws IOException {
+        final File archive = archive("archive.jar", "a.jar");
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        ExtractionManager.cleanUpAtShutdown(home);
+        Assert.assertTrue(new File(home, "lib/a.jar").isFile());
+        // without cache, lib is removed
+        final Map<String, String> arguments = new HashMap<>();
+        arguments.put("BootStrap.extractionCache", "false");
+        ExtractionManager.initialize(arguments);
+        ExtractionManager.cleanUpAtShutdown(home);
+        Assert.assertFalse(new File(home, "lib").exists());
+    }
+
+    @Test
+    public void explodeWithWorkers() throws IOException {
+        final Map<String, String> arguments = new HashMap<>();
+        arguments.put("BootStrap.extractionThreads", "4");
+        ExtractionManager.initialize(arguments);
+        final String[] libraries = new String[32];
+        for (int i = 0; i < libraries.length; i++) {
+            libraries[i] = "lib-" + i + ".jar";
+        }
+        final File archive = archive("archive.jar", libraries);
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        for (final String library : libraries) {
+            Assert.assertEquals(library.length(), new File(home, "lib/" + library).length());
+        }
+    }
+
+    @Test
+    public void explodeWithoutCache() throws IOException {
+        final Map<String, String> arguments = new HashMap<>();
+        arguments.put("BootStrap.extractionCache", "false");
+        ExtractionManager.initialize(arguments);
+        final File archive = archive("archive.jar", "a.jar");
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        Assert.assertTrue(new File(home, "lib/a.jar").isFile());
+        Assert.assertFalse(ExtractionCache.exists(new File(home, "lib")));
+    }
+
+    @Test
+    public void explodeInBackground() throws IOException {
+        final Map<String, String> arguments = new HashMap<>();
+        arguments.put("BootStrap.extractionThreads", "2");
+        ExtractionManager.initialize(arguments);
+        final String[] libraries = new String[32];
+        for (int i = 0; i < libraries.length; i++) {
+            libraries[i] = "lib-" + i + ".jar";
+        }
+        final File archive = archive("archive.jar", libraries);
+        final Extraction extraction = ExtractionManager.explodeInBackground(archive.getPath(), home, Arrays.asList("lib-31.jar"));
+        Assert.assertNotNull(extraction);
+        Assert.assertTrue(extraction.await("lib-17.jar"));
+        Assert.assertEquals("lib-17.jar".length(), new File(home, "lib/lib-17.jar").length());
+        Assert.assertTrue(extraction.awaitAll());
+        Assert.assertTrue(extraction.isDone());
+        for (final String library : libraries) {
+            Assert.assertEquals(library.length(), new File(home, "lib/" + library).length());
+        }
+        Assert.assertTrue(ExtractionCache.exists(new File(home, "lib")));
+        // up to date: nothing to wait for
+        Assert.assertTrue(ExtractionManager.explodeInBackground(archive.getPath(), home, null).isDone());
+    }
+
+    @Test
+    public void explodeShared() throws IOException {
+        final Map<String, String> arguments = new HashMap<>();
+        arguments.put("BootStrap.sharedExtraction", "true");
+        ExtractionManager.initialize(arguments);
+        try {
+            File archive = archive("archive.jar", "a.jar");
+            final File version = ExtractionManager.explodeShared(archive.getPath(), home);
+            Assert.assertNotNull(version);
+            Assert.assertEquals(new File(home, SharedExtraction.VERSIONS), version.getParentFile());
+            Assert.assertTrue(new File(version, "lib/a.jar").isFile());
+            Assert.assertEquals(version, ExtractionManager.explodeShared(archive.getPath(), home));
+            // a new archive version is published aside, previous one is still used by this process
+            archive.setLastModified(archive.lastModified() - 10000);
+            final File other = ExtractionManager.explodeShared(archive.getPath(), home);
+            Assert.assertNotEquals(version, other);
+            Assert.assertTrue(version.isDirectory());
+            Assert.assertEquals(2, version.getParentFile().listFiles(File::isDirectory).length);
+            SharedExtraction.release();
+            ExtractionManager.cleanUp(home);
+            Assert.assertFalse(version.exists());
+            Assert.assertFalse(other.exists());
+        } finally {
+            SharedExtraction.release();
+            ExtractionManager.initialize(new HashMap<String, String>());
+        }
+    }
+
+    @Test
+    public void explodeSharedUpgradeLinkUnchangedFiles() throws IOException {
+        final Map<String, String> arguments = new HashMap<>();
+        arguments.put("BootStrap.sharedExtraction", "true");
+        ExtractionManager.initialize(arguments);
+        try {
+            File archive = archive("archive.jar", "a.jar", "b.jar");
+            final File version = ExtractionManager.explodeShared(archive.getPath(), home);
+            archive = archive("archive.jar", "a.jar", "c.jar");
+            archive.setLastModified(archive.lastModified() + 2000L);
+            final File other = ExtractionManager.explodeShared(archive.getPath(), home);
+            Assert.assertNotEquals(version, other);
+            final Object key = Files.readAttributes(new File(version, "lib/a.jar").toPath(), BasicFileAttributes.class).fileKey();
+            Assert.assertEquals(key, Files.readAttributes(new File(other, "lib/a.jar").toPath(), BasicFileAttributes.class).fileKey());
+            Assert.assertFalse(new File(other, "lib/b.jar").exists());
+            Assert.assertEquals("c.jar", new String(Files.readAllBytes(new File(other, "lib/c.jar").toPath()), "UTF-8"));
+            Assert.assertTrue(ExtractionCache.load(new File(other, "lib")).isUpToDate(ExtractionCache.fingerprint(archive)));
+        } finally {
+            SharedExtraction.release();
+            ExtractionManager.initialize(new HashMap<String, String>());
+        }
+    }
+
+    @Test
+    public void explodeStoredAndDeflatedEntries() throws IOException {
+        final byte[] content = new byte[300 * 1024];
+        new Random(17).nextBytes(content);
+        final File archive = new File(home.getParentFile(), "mixed.jar");
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(archive))) {
+            final CRC32 crc = new CRC32();
+            crc.update(content);
+            final JarEntry stored = new JarEntry("META-INF/lib/stored.jar");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(content.length);
+            stored.setCrc(crc.getValue());
+            jar.putNextEntry(stored);
+            jar.write(content);
+            jar.closeEntry();
+            jar.putNextEntry(new JarEntry("META-INF/lib/deflated.jar"));
+            jar.write(content);
+            jar.closeEntry();
+        }
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        Assert.assertArrayEquals(content, Files.readAllBytes(new File(home, "lib/stored.jar").toPath()));
+        Assert.assertArrayEquals(content, Files.readAllBytes(new File(home, "lib/deflated.jar").toPath()));
+    }
+
+    @Test
+    public void explodeResumeInterruptedExtraction() throws IOException {
+        final File archive = archive("archive.jar", "a.jar", "b.jar");
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        final File lib = new File(home, "lib");
+        final File a = new File(lib, "a.jar");
+        final Object key = Files.readAttributes(a.toPath(), BasicFileAttributes.class).fileKey();
+        // interrupted after a.jar: journal without stamp
+        final CRC32 crc = new CRC32();
+        crc.update("a.jar".getBytes("UTF-8"));
+        Files.write(new File(lib, ExtractionCache.JOURNAL).toPath(),
+                ("5:" + Long.toHexString(crc.getValue()) + ":" + a.lastModified() + " a.jar\n").getBytes("UTF-8"));
+        Files.delete(new File(lib, ExtractionCache.STAMP).toPath());
+        Files.delete(new File(lib, "b.jar").toPath());
+        Assert.assertTrue(ExtractionCache.exists(lib));
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        Assert.assertEquals(key, Files.readAttributes(a.toPath(), BasicFileAttributes.class).fileKey());
+        Assert.assertEquals("b.jar", new String(Files.readAllBytes(new File(lib, "b.jar").toPath()), "UTF-8"));
+        Assert.assertTrue(new File(lib, ExtractionCache.STAMP).isFile());
+        Assert.assertFalse(new File(lib, ExtractionCache.JOURNAL).exists());
+    }
+
+    @Test
+    public void explodeReplaceModifiedFile() throws IOException {
+        File archive = archive("archive.jar", "a.jar", "b.jar");
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        final File a = new File(home, "lib/a.jar");
+        Files.write(a.toPath(), "x.jar".getBytes("UTF-8"));
+        a.setLastModified(1000L);
+        archive = archive("archive.jar", "a.jar", "c.jar");
+        archive.setLastModified(archive.lastModified() + 2000L);
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        Assert.assertEquals("a.jar", new String(Files.readAllBytes(a.toPath()), "UTF-8"));
+    }
+
+    @Test
+    public void explodeSkipCorruptedEntry() throws IOException {
+        final byte[] content = "0123456789".getBytes("UTF-8");
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+        final File archive = new File(home.getParentFile(), "corrupted.jar");
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(archive))) {
+            jar.putNextEntry(new JarEntry("META-INF/lib/a.jar"));
+            jar.write("a.jar".getBytes("UTF-8"));
+            jar.closeEntry();
+            final JarEntry stored = new JarEntry("META-INF/lib/corrupted.jar");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(content.length);
+            stored.setCrc(crc.getValue());
+            jar.putNextEntry(stored);
+            jar.write(content);
+            jar.closeEntry();
+        }
+        // alter stored data, CRC of entry is left unchanged
+        final byte[] bytes = Files.readAllBytes(archive.toPath());
+        for (int i = 0; i < (bytes.length - content.length); i++) {
+            if (Arrays.equals(content, Arrays.copyOfRange(bytes, i, i + content.length))) {
+                bytes[i] = (byte) 'X';
+                break;
+            }
+        }
+        Files.write(archive.toPath(), bytes);
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        Assert.assertTrue(new File(home, "lib/a.jar").isFile());
+        Assert.assertFalse(new File(home, "lib/corrupted.jar").exists());
+    }
+
+    @Test
+    public void explodeSkipNativesOfOtherPlatforms() throws IOException {
+        final String other = OSDetector.isWindows() ? "libx.so" : "x.dll";
+        final String variant = JniLoader.VARIANTS + "/other-" + OSDetector.getArch() + "/" + System.mapLibraryName("x");
+        final File archive = archive("archive.jar", "a.jar", other, variant, System.mapLibraryName("x"));
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        Assert.assertTrue(new File(home, "lib/a.jar").isFile());
+        Assert.assertTrue(new File(home, "lib/" + System.mapLibraryName("x")).isFile());
+        Assert.assertFalse(new File(home, "lib/" + other).exists());
+        Assert.assertFalse(new File(home, "lib/" + variant).exists());
+    }
+
+    /**
+     * Build an archive with specified inner libraries, each one with its own name as content.
+     */
+    private File archive(final String name, final String... libraries) throws IOException {
+        final File archive = new File(home.getParentFile(), name);
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(archive))) {
+            for (final String library : libraries) {
+                jar.putNextEntry(new JarEntry("META-INF/lib/" + library));
+                jar.write(library.getBytes("UTF-8"));
+                jar.closeEntry();
+            }
+        }
+        return archive;
+    }
+}
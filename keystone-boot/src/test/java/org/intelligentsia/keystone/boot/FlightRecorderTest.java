@@ -0,0 +1,53 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * FlightRecorderTest check Keystone events degrade to no-ops without recording.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class FlightRecorderTest {
+
+    @Test
+    public void availability() {
+        boolean jfr;
+        try {
+            Class.forName("jdk.jfr.EventFactory");
+            jfr = true;
+        } catch (final ClassNotFoundException exception) {
+            jfr = false;
+        }
+        Assert.assertEquals(jfr, FlightRecorder.isAvailable());
+    }
+
+    @Test
+    public void eventsWithoutRecording() {
+        // no recording is running: events are disabled, and not defined
+        Assert.assertFalse(FlightRecorder.isRecording());
+        Assert.assertFalse(FlightRecorder.EXTRACTION.isEnabled());
+        FlightRecorder.EXTRACTION.begin().commit("a.jar", 42L);
+        FlightRecorder.CLASS_LOOKUP_MISS.commit("a.Missing");
+        FlightRecorder.OPERATION.commit("RELOAD", null);
+    }
+}
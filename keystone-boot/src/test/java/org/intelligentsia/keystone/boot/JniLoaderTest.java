@@ -0,0 +1,96 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JniLoaderTest check native libraries registry.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class JniLoaderTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new File("target" + File.separator + "jni-loader");
+        ExtractionManager.delete(directory);
+        directory.mkdirs();
+        JniLoader.unregister(directory);
+    }
+
+    @Test
+    public void findRegisteredLibrary() throws IOException {
+        final File library = new File(directory, System.mapLibraryName("codec"));
+        Files.write(library.toPath(), new byte[] { 0 });
+        JniLoader.register(directory);
+        // registry does not access file system
+        Files.write(new File(directory, System.mapLibraryName("late")).toPath(), new byte[] { 0 });
+        Assert.assertEquals(library.getAbsolutePath(), JniLoader.findLibrary(directory, "codec"));
+        Assert.assertNull(JniLoader.findLibrary(directory, "late"));
+        JniLoader.unregister(directory);
+        Assert.assertNotNull(JniLoader.findLibrary(directory, "late"));
+    }
+
+    @Test
+    public void selectBestVariant() throws IOException {
+        final String name = System.mapLibraryName("codec");
+        final String platform = OSDetector.getPlatform();
+        for (final String variant : new String[] { platform, platform + "-nofeature", "other-" + OSDetector.getArch() }) {
+            final File folder = new File(directory, JniLoader.VARIANTS + File.separator + variant);
+            folder.mkdirs();
+            Files.write(new File(folder, name).toPath(), new byte[] { 0 });
+        }
+        Files.write(new File(directory, name).toPath(), new byte[] { 0 });
+        final String expected = new File(directory, JniLoader.VARIANTS + File.separator + platform + File.separator + name)
+                .getAbsolutePath();
+        Assert.assertEquals(expected, JniLoader.findLibrary(directory, "codec"));
+        JniLoader.register(directory);
+        Assert.assertEquals(expected, JniLoader.findLibrary(directory, "codec"));
+        JniLoader.unregister(directory);
+
+        Assert.assertEquals(0, JniLoader.rank(name, name));
+        Assert.assertEquals(1, JniLoader.rank(JniLoader.VARIANTS + "/" + platform + "/" + name, name));
+        Assert.assertEquals(-1, JniLoader.rank(JniLoader.VARIANTS + "/" + platform + "-nofeature/" + name, name));
+        Assert.assertEquals(-1, JniLoader.rank(JniLoader.VARIANTS + "/" + platform + "/other.so", name));
+        if (!OSDetector.getFeatures().isEmpty()) {
+            final String feature = OSDetector.getFeatures().iterator().next();
+            Assert.assertEquals(2, JniLoader.rank(JniLoader.VARIANTS + "/" + platform + "-" + feature + "/" + name, name));
+        }
+    }
+
+    @Test
+    public void preloadAllStagesWhenOneFail() throws IOException {
+        final File invalid = new File(directory, System.mapLibraryName("invalid"));
+        Files.write(invalid.toPath(), new byte[] { 0 });
+        JniLoader.register(directory);
+        Assert.assertFalse(JniLoader.preloadLibraries(directory, "missing, invalid;other"));
+        Assert.assertFalse(JniLoader.loadLibraries(directory, "missing,invalid"));
+        JniLoader.unregister(directory);
+    }
+}
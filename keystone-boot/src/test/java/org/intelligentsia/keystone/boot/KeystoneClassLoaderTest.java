@@ -0,0 +1,221 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * KeystoneClassLoaderTest check indexed lookup of {@link KeystoneClassLoader}.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class KeystoneClassLoaderTest {
+
+    private File home;
+    private URL[] urls;
+
+    @Before
+    public void setUp() throws IOException {
+        home = new File("target" + File.separator + "class-loader-home");
+        ExtractionManager.delete(home);
+        final File lib = new File(home, "lib");
+        lib.mkdirs();
+        urls = new URL[] { jar(new File(lib, "a.jar"), "a/resource.txt", "shared.txt").toURI().toURL(),
+                jar(new File(lib, "b.jar"), "b/resource.txt", "shared.txt").toURI().toURL() };
+    }
+
+    @Test
+    public void writeAndReadIndex() throws IOException {
+        final ClassPathIndex index = index();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        index.write(output);
+        final ClassPathIndex result = ClassPathIndex.read(new ByteArrayInputStream(output.toByteArray()));
+        Assert.assertEquals(index.getLibraries(), result.getLibraries());
+        Assert.assertEquals(Arrays.asList("a.jar", "b.jar"), result.getLibraries(""));
+        Assert.assertEquals(Arrays.asList("b.jar"), result.getLibraries("b"));
+        Assert.assertTrue(result.getLibraries("c").isEmpty());
+    }
+
+    @Test
+    public void findResourcesWithIndex() throws IOException {
+        checkResources(index());
+    }
+
+    @Test
+    public void findResourcesWithoutIndex() throws IOException {
+        checkResources(null);
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void missFailFast() throws Exception {
+        try (KeystoneClassLoader loader = new KeystoneClassLoader(urls, null, home, index())) {
+            loader.findClass("c.Missing");
+        }
+    }
+
+    @Test
+    public void loadClassesConcurrently() throws Exception {
+        final File file = new File(home, "lib/classes.jar");
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < 200; i++) {
+                jar.putNextEntry(new JarEntry("concurrent/C" + i + ".class"));
+                jar.write(KeystoneClassLoaderTest.classFile("concurrent/C" + i));
+                jar.closeEntry();
+            }
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (KeystoneClassLoader loader = new KeystoneClassLoader(new URL[] { file.toURI().toURL() }, null, home, null)) {
+            final List<Future<List<Class<?>>>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    final List<Class<?>> result = new ArrayList<>();
+                    for (int i = 0; i < 200; i++) {
+                        result.add(loader.loadClass("concurrent.C" + i));
+                    }
+                    return result;
+                }));
+            }
+            final List<Class<?>> expected = futures.get(0).get();
+            for (final Future<List<Class<?>>> future : futures) {
+                final List<Class<?>> result = future.get();
+                for (int i = 0; i < 200; i++) {
+                    Assert.assertSame(expected.get(i), result.get(i));
+                    Assert.assertSame(loader, result.get(i).getClassLoader());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void loadVersionedClassOfMultiReleaseJar() throws Exception {
+        // multi-release jar are supported by JDK 9 and later
+        if (Ergonomics.feature(System.getProperty("java.specification.version")) < 9) {
+            return;
+        }
+        final File file = new File(home, "lib/multi-release.jar");
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Multi-Release", "true");
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(file), manifest)) {
+            // base class is not readable: only versioned class can be loaded
+            jar.putNextEntry(new JarEntry("mr/Version.class"));
+            jar.write(new byte[] { 0, 1, 2 });
+            jar.closeEntry();
+            jar.putNextEntry(new JarEntry("META-INF/versions/9/mr/Version.class"));
+            jar.write(KeystoneClassLoaderTest.classFile("mr/Version"));
+            jar.closeEntry();
+            jar.putNextEntry(new JarEntry("META-INF/versions/9/mr/only/Versioned.class"));
+            jar.write(KeystoneClassLoaderTest.classFile("mr/only/Versioned"));
+            jar.closeEntry();
+        }
+        final ClassPathIndex index = new ClassPathIndex();
+        index.add(file);
+        for (final ClassPathIndex classPathIndex : Arrays.asList(index, null)) {
+            try (KeystoneClassLoader loader = new KeystoneClassLoader(new URL[] { file.toURI().toURL() }, null, home,
+                    classPathIndex)) {
+                Assert.assertSame(loader, loader.loadClass("mr.Version").getClassLoader());
+                Assert.assertSame(loader, loader.loadClass("mr.only.Versioned").getClassLoader());
+                Assert.assertTrue(loader.getResource("mr/Version.class").toString().endsWith("!/META-INF/versions/9/mr/Version.class"));
+            }
+        }
+    }
+
+    private void checkResources(final ClassPathIndex index) throws IOException {
+        try (KeystoneClassLoader loader = new KeystoneClassLoader(urls, null, home, index)) {
+            Assert.assertTrue(loader.getResource("a/resource.txt").toString().contains("a.jar!/"));
+            Assert.assertTrue(loader.getResource("b/resource.txt").toString().contains("b.jar!/"));
+            Assert.assertTrue(loader.getResource("shared.txt").toString().contains("a.jar!/"));
+            Assert.assertEquals(2, Collections.list(loader.getResources("shared.txt")).size());
+            Assert.assertNull(loader.getResource("c/resource.txt"));
+        }
+    }
+
+    private ClassPathIndex index() throws IOException {
+        final ClassPathIndex index = new ClassPathIndex();
+        index.add(new File(home, "lib/a.jar"));
+        index.add(new File(home, "lib/b.jar"));
+        return index;
+    }
+
+    private static File jar(final File file, final String... entries) throws IOException {
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(file))) {
+            for (final String entry : entries) {
+                jar.putNextEntry(new JarEntry(entry));
+                jar.write(entry.getBytes("UTF-8"));
+                jar.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * @param name internal name of class, like "a/b/C"
+     * @return content of an empty public class file.
+     * @throws IOException
+     */
+    private static byte[] classFile(final String name) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(content);
+        output.writeInt(0xCAFEBABE);
+        output.writeShort(0); // minor
+        output.writeShort(50); // major (java 6, no stack map needed)
+        output.writeShort(5); // constant pool count
+        output.writeByte(7); // #1 class
+        output.writeShort(2);
+        output.writeByte(1); // #2 utf8
+        output.writeUTF(name);
+        output.writeByte(7); // #3 class
+        output.writeShort(4);
+        output.writeByte(1); // #4 utf8
+        output.writeUTF("java/lang/Object");
+        output.writeShort(0x0021); // public super
+        output.writeShort(1); // this
+        output.writeShort(3); // super
+        output.writeShort(0); // interfaces
+        output.writeShort(0); // fields
+        output.writeShort(0); // methods
+        output.writeShort(0); // attributes
+        output.flush();
+        return content.toByteArray();
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.util.Arrays;
+
+/**
+ * Main class which ask an in process restart, once.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class MainReload {
+
+    static int starts = 0;
+    static int stops = 0;
+
+    public static void main(final String[] args) throws Exception {
+        starts++;
+        if (!Arrays.asList(args).contains("--BootStrap.restarted")) {
+            BootStrap.register(new Lifecycle() {
+                public void stop() {
+                    stops++;
+                }
+            });
+            throw new KeystoneException(KeystoneException.Operation.RELOAD);
+        }
+    }
+
+}
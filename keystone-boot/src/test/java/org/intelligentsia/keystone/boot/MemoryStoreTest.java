@@ -0,0 +1,103 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * MemoryStoreTest check home directory resolution and release of memory store.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class MemoryStoreTest {
+
+    private File root;
+    private File archive;
+    private Map<String, String> arguments;
+
+    @Before
+    public void setUp() throws IOException {
+        root = new File("target" + File.separator + "memory-store");
+        ExtractionManager.delete(root);
+        root.mkdirs();
+        archive = new File("target" + File.separator + "memory-store.jar");
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(archive))) {
+            jar.putNextEntry(new JarEntry("META-INF/lib/a.jar"));
+            jar.write(new byte[1024]);
+            jar.closeEntry();
+        }
+        arguments = new HashMap<>();
+        arguments.put("BootStrap.extractionStore", "memory");
+        arguments.put("BootStrap.memoryDirectory", root.getPath());
+    }
+
+    @Test
+    public void resolveHomeDirectory() throws IOException {
+        Assert.assertTrue(MemoryStore.isEnabled(arguments));
+        Assert.assertEquals(1024L, ExtractionManager.getRequiredSpace(archive.getPath()));
+        final File home = MemoryStore.getHomeDirectory(arguments, archive.getPath());
+        Assert.assertEquals(root, home.getParentFile());
+        Assert.assertTrue(home.getName().startsWith(MemoryStore.PREFIX + SharedExtraction.id(ExtractionCache.fingerprint(archive))));
+        Assert.assertTrue(home.isDirectory());
+        Assert.assertTrue(MemoryStore.holds(home));
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), home));
+        MemoryStore.release(home, false, 2);
+        Assert.assertFalse(home.exists());
+    }
+
+    @Test
+    public void concurrentHomeDirectories() throws IOException {
+        final File first = MemoryStore.getHomeDirectory(arguments, archive.getPath());
+        final File second = MemoryStore.getHomeDirectory(arguments, archive.getPath());
+        Assert.assertNotEquals(first, second);
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), first));
+        Assert.assertTrue(ExtractionManager.explode(archive.getPath(), second));
+        // first process exit
+        MemoryStore.release(first, false, 2);
+        Assert.assertFalse(first.exists());
+        Assert.assertTrue(new File(second, "lib/a.jar").isFile());
+        MemoryStore.release(second, false, 2);
+    }
+
+    @Test
+    public void sharedHomeDirectory() {
+        arguments.put("BootStrap.sharedExtraction", "true");
+        final File home = MemoryStore.getHomeDirectory(arguments, archive.getPath());
+        Assert.assertEquals(new File(root, MemoryStore.PREFIX + SharedExtraction.id(ExtractionCache.fingerprint(archive))), home);
+        Assert.assertEquals(home, MemoryStore.getHomeDirectory(arguments, archive.getPath()));
+    }
+
+    @Test
+    public void fallbackWithoutMemoryFileSystem() {
+        arguments.put("BootStrap.memoryDirectory", new File(root, "missing").getPath());
+        Assert.assertNull(MemoryStore.getHomeDirectory(arguments, archive.getPath()));
+        Assert.assertFalse(MemoryStore.isEnabled(new HashMap<String, String>()));
+    }
+}
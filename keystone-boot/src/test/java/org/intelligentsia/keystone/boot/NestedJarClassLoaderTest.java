@@ -0,0 +1,159 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.intelligentsia.keystone.boot.protocol.keystone.Handler;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * NestedJarClassLoaderTest check loading from inner jar libraries without extraction.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class NestedJarClassLoaderTest {
+
+    private static File archive;
+
+    @BeforeClass
+    public static void createArchive() throws IOException {
+        final File home = new File("target");
+        home.mkdirs();
+        archive = new File(home, "nested-archive.jar");
+        final byte[] stored = jar(ZipEntry.STORED, "org/intelligentsia/keystone/boot/Main.class", read("Main.class"), "stored.txt",
+                "stored".getBytes("UTF-8"));
+        final byte[] deflated = jar(ZipEntry.DEFLATED, "deflated.txt", "deflated".getBytes("UTF-8"), "stored.txt",
+                "hidden".getBytes("UTF-8"));
+        final byte[] release = jar(ZipEntry.DEFLATED, "META-INF/MANIFEST.MF",
+                "Manifest-Version: 1.0\r\nMulti-Release: true\r\n\r\n".getBytes("UTF-8"), "release.txt", "8".getBytes("UTF-8"),
+                "META-INF/versions/9/release.txt", "9".getBytes("UTF-8"), "META-INF/versions/9999/release.txt",
+                "9999".getBytes("UTF-8"), "META-INF/versions/9/only.txt", "only".getBytes("UTF-8"));
+        try (FileOutputStream output = new FileOutputStream(archive)) {
+            output.write(jar(ZipEntry.STORED, "META-INF/lib/stored.jar", stored, "META-INF/lib/deflated.jar", deflated,
+                    "META-INF/lib/release.jar", release));
+        }
+    }
+
+    @Test
+    public void loadClassFromStoredJar() throws Exception {
+        try (NestedJarClassLoader loader = loader()) {
+            final Class<?> type = loader.findClass(Main.class.getName());
+            Assert.assertSame(loader, type.getClassLoader());
+            Assert.assertEquals(Handler.PROTOCOL, type.getProtectionDomain().getCodeSource().getLocation().getProtocol());
+        }
+    }
+
+    @Test
+    public void loadResources() throws Exception {
+        try (NestedJarClassLoader loader = loader()) {
+            Assert.assertEquals("stored", content(loader.getResource("stored.txt")));
+            Assert.assertEquals("deflated", content(loader.getResource("deflated.txt")));
+            Assert.assertEquals(2, Collections.list(loader.getResources("stored.txt")).size());
+            Assert.assertNull(loader.getResource("missing.txt"));
+        }
+    }
+
+    @Test
+    public void loadVersionedResources() throws Exception {
+        final boolean versioned = Ergonomics.feature(System.getProperty("java.specification.version")) >= 9;
+        try (NestedJarClassLoader loader = loader()) {
+            Assert.assertEquals(versioned ? "9" : "8", content(loader.getResource("release.txt")));
+            Assert.assertEquals(versioned ? "9" : "8", content(Collections.list(loader.getResources("release.txt")).get(0)));
+            if (versioned) {
+                Assert.assertEquals("only", content(loader.getResource("only.txt")));
+            } else {
+                Assert.assertNull(loader.getResource("only.txt"));
+            }
+        }
+    }
+
+    @Test
+    public void parseResourceUrl() throws Exception {
+        try (NestedJarClassLoader loader = loader()) {
+            Handler.register();
+            final URL url = loader.getResource("deflated.txt");
+            Assert.assertEquals("deflated", content(new URL(url.toString())));
+        }
+    }
+
+    private static NestedJarClassLoader loader() throws IOException {
+        return new NestedJarClassLoader(NestedArchive.open(archive), new URL[0], ClassLoader.getSystemClassLoader().getParent(),
+                archive.getParentFile());
+    }
+
+    private static String content(final URL url) throws IOException {
+        try (InputStream input = url.openStream()) {
+            return new String(read(input), "UTF-8");
+        }
+    }
+
+    private static byte[] read(final String resource) throws IOException {
+        try (InputStream input = NestedJarClassLoaderTest.class.getResourceAsStream(resource)) {
+            return read(input);
+        }
+    }
+
+    private static byte[] read(final InputStream input) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int count;
+        while ((count = input.read(buffer)) >= 0) {
+            output.write(buffer, 0, count);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Build a jar with specified method and pairs of entry name and content.
+     */
+    private static byte[] jar(final int method, final Object... entries) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(output)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                final byte[] content = (byte[]) entries[i + 1];
+                final ZipEntry entry = new ZipEntry((String) entries[i]);
+                entry.setMethod(method);
+                if (method == ZipEntry.STORED) {
+                    final CRC32 crc = new CRC32();
+                    crc.update(content);
+                    entry.setSize(content.length);
+                    entry.setCompressedSize(content.length);
+                    entry.setCrc(crc.getValue());
+                }
+                zip.putNextEntry(entry);
+                zip.write(content);
+                zip.closeEntry();
+            }
+        }
+        return output.toByteArray();
+    }
+}
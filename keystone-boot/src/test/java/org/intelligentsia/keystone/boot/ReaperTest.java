@@ -0,0 +1,59 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * ReaperTest check tombstones.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class ReaperTest {
+
+    @Test
+    public void buryAndReap() throws IOException {
+        final File home = new File("target" + File.separator + "reaper-home");
+        ExtractionManager.delete(home);
+        final File lib = new File(home, "lib");
+        for (int d = 0; d < 8; d++) {
+            final File directory = new File(lib, "d" + d + File.separator + "e");
+            directory.mkdirs();
+            for (int f = 0; f < 16; f++) {
+                Files.write(new File(directory, "f" + f).toPath(), new byte[] { (byte) f });
+            }
+        }
+        Files.write(new File(lib, "a.jar").toPath(), new byte[] { 1 });
+        final File tombstone = Reaper.bury(home, lib);
+        Assert.assertNotNull(tombstone);
+        Assert.assertFalse(lib.exists());
+        Assert.assertTrue(new File(tombstone, "a.jar").isFile());
+        Assert.assertEquals(1, Reaper.tombstones(home).size());
+        Assert.assertNull(Reaper.bury(home, lib));
+        Assert.assertTrue(Reaper.reap(home, 4, 0));
+        Assert.assertTrue(Reaper.tombstones(home).isEmpty());
+        Assert.assertFalse(tombstone.exists());
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * SharedExtractionTest check that a version is kept while another process use it.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class SharedExtractionTest {
+
+    private static final String FINGERPRINT = "shared-extraction-test";
+
+    @Test
+    public void keepVersionUsedByAnotherProcess() throws Exception {
+        final File home = new File("target" + File.separator + "shared-home");
+        ExtractionManager.delete(home);
+        final File java = new File(new File(System.getProperty("java.home"), "bin"), "java");
+        final Process process = new ProcessBuilder(java.getPath(), "-cp", System.getProperty("java.class.path"),
+                SharedExtractionTest.class.getName(), home.getPath()).redirectErrorStream(true).start();
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            Assert.assertEquals("published", reader.readLine());
+            final File version = new File(new File(home, SharedExtraction.VERSIONS), SharedExtraction.id(FINGERPRINT));
+            // reuse published version
+            Assert.assertEquals(version, SharedExtraction.publish(home, FINGERPRINT, (lib, last) -> Assert.fail("exploded twice")));
+            SharedExtraction.release();
+            SharedExtraction.reap(home);
+            Assert.assertTrue(new File(version, "lib/a.jar").isFile());
+            // child exit
+            process.getOutputStream().close();
+            Assert.assertEquals(0, process.waitFor());
+            SharedExtraction.reap(home);
+            Assert.assertFalse(version.exists());
+        } finally {
+            process.destroy();
+        }
+    }
+
+    @Test
+    public void republishInvalidatedVersion() throws Exception {
+        final File home = new File("target" + File.separator + "stale-home");
+        ExtractionManager.delete(home);
+        final File version = SharedExtraction.publish(home, FINGERPRINT, SharedExtractionTest::explode);
+        // still in use by this process
+        ExtractionCache.invalidate(new File(version, "lib"));
+        final int[] explode = new int[1];
+        Assert.assertEquals(version, SharedExtraction.publish(home, FINGERPRINT, (lib, last) -> {
+            explode[0]++;
+            SharedExtractionTest.explode(lib, last);
+        }));
+        Assert.assertEquals(1, explode[0]);
+        Assert.assertTrue(ExtractionCache.load(new File(version, "lib")).isUpToDate(FINGERPRINT));
+        Assert.assertEquals(2, new File(home, SharedExtraction.VERSIONS).listFiles(File::isDirectory).length);
+        SharedExtraction.release();
+        SharedExtraction.reap(home);
+        Assert.assertEquals(0, new File(home, SharedExtraction.VERSIONS).listFiles(File::isDirectory).length);
+    }
+
+    private static void explode(final File lib, final File last) throws IOException {
+        Files.write(new File(lib, "a.jar").toPath(), new byte[] { 1 });
+        new ExtractionCache(FINGERPRINT).store(lib);
+    }
+
+    /**
+     * Publish a version, and hold it until standard input is closed.
+     *
+     * @param args home directory
+     * @throws IOException if an error occurs
+     */
+    public static void main(final String[] args) throws IOException {
+        SharedExtraction.publish(new File(args[0]), FINGERPRINT, SharedExtractionTest::explode);
+        System.out.println("published");
+        System.out.flush();
+        while (System.in.read() >= 0) {
+            // wait
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone.boot;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * TimelineTest check startup timeline.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class TimelineTest {
+
+    @Test
+    public void recordEvents() {
+        final Timeline timeline = Timeline.initialize(new HashMap<String, String>(), System.nanoTime());
+        final Timeline.Event event = timeline.begin("extract:a \"quoted\".jar");
+        Assert.assertEquals(-1, event.getDuration());
+        event.end(42);
+        timeline.mark("main");
+        Assert.assertSame(timeline, Timeline.get());
+        Assert.assertEquals(2, timeline.getEvents().size());
+        Assert.assertEquals(42, timeline.getEvent("extract:a \"quoted\".jar").getBytes());
+        Assert.assertTrue(event.getDuration() >= 0);
+        Assert.assertTrue(timeline.toJson().contains("\"name\":\"extract:a \\\"quoted\\\".jar\""));
+    }
+
+    @Test
+    public void publishBootTimeline() throws Exception {
+        final File file = new File("target" + File.separator + "timeline.json");
+        file.delete();
+        BootStrap.main(new String[] { "--Main-Class=" + Main.class.getName(), "--BootStrap.timelineFile=" + file.getPath() });
+        final Timeline timeline = Timeline.get();
+        for (final String name : new String[] { "arguments", "jvmCheck", "home", "extraction", "classPath", "classLoader", "mainClass",
+                "main" }) {
+            Assert.assertNotNull(name, timeline.getEvent(name));
+        }
+        final String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        Assert.assertEquals(json, System.getProperty("BootStrap.timeline"));
+        Assert.assertTrue(json.contains("\"name\":\"mainClass\""));
+    }
+}
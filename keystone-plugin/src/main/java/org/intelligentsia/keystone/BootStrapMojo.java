@@ -22,9 +22,13 @@ package org.intelligentsia.keystone;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Stack;
@@ -60,6 +64,9 @@ import org.codehaus.plexus.archiver.jar.ManifestException;
 import org.codehaus.plexus.archiver.manager.ArchiverManager;
 import org.codehaus.plexus.archiver.manager.NoSuchArchiverException;
 import org.codehaus.plexus.util.FileUtils;
+import org.intelligentsia.keystone.boot.BootPlan;
+import org.intelligentsia.keystone.boot.ClassPathIndex;
+import org.intelligentsia.keystone.boot.JniLoader;
 
 /**
  * BootStrapMojo implement maven plugin for keystone bootstrap project.
@@ -139,11 +146,136 @@ public class BootStrapMojo extends AbstractMojo {
     private Boolean cleanUpLib = true;
 
     /**
-     * Parameter for Bootstrap: true|false (default true) clean up local 'lib' file system on shutdown.
+     * Parameter for Bootstrap: true|false (default true) clean up local 'lib' file system on shutdown (kept while an extraction
+     * stamp exists, see 'extractionCache').
      */
     @Parameter(property = "cleanUpBeforeShutdown")
     private Boolean cleanUpBeforeShutdown = true;
 
+    /**
+     * Parameter for Bootstrap: time budget in milliseconds of clean up in shutdown hook (default 500).
+     */
+    @Parameter(property = "cleanUpBudget")
+    private Integer cleanUpBudget = null;
+
+    /**
+     * Parameter for Bootstrap: true|false (default true) extract only entries which have changed since last startup.
+     */
+    @Parameter(property = "extractionCache")
+    private Boolean extractionCache = true;
+
+    /**
+     * Parameter for Bootstrap: number of threads used to explode libraries (default is number of processors of host).
+     */
+    @Parameter(property = "extractionThreads")
+    private Integer extractionThreads = null;
+
+    /**
+     * Parameter for Bootstrap: explode|nested|pipelined (default explode). With 'nested', inner libraries are loaded directly from
+     * archive. With 'pipelined', inner libraries are exploded in background while main class is started.
+     */
+    @Parameter(property = "extractionMode")
+    private String extractionMode = null;
+
+    /**
+     * Parameter for Bootstrap: true|false (default false) explode libraries in versions shared by several processes started from the
+     * same directory.
+     */
+    @Parameter(property = "sharedExtraction")
+    private Boolean sharedExtraction = false;
+
+    /**
+     * Parameter for Bootstrap: disk|memory (default disk). With 'memory', libraries are exploded on a memory file system
+     * ("/dev/shm") when it has enough space, which is released on shutdown.
+     */
+    @Parameter(property = "extractionStore")
+    private String extractionStore = null;
+
+    /**
+     * Parameter for Bootstrap: native libraries loaded before main class, in dependency order. Stages are separated by ';', libraries of
+     * a stage are comma separated. Example: "z,ssl;crypto".
+     */
+    @Parameter(property = "preloadLibraries")
+    private String preloadLibraries = null;
+
+    /**
+     * Parameter for Bootstrap: true|false (default true) do not extract native libraries and variants of other platforms.
+     */
+    @Parameter(property = "nativeFilter")
+    private Boolean nativeFilter = true;
+
+    /**
+     * Platforms (like "linux-x86_64", "windows-x86_64") for which an archive without native libraries of other platforms is attached,
+     * with platform as classifier.
+     */
+    @Parameter(property = "platforms")
+    private List<String> platforms = null;
+
+    /**
+     * Parameter for Bootstrap: true|false (default false) run application in a child JVM with a class data sharing archive of
+     * application classes, dumped on first launch (JDK 13 and later).
+     */
+    @Parameter(property = "appCds")
+    private Boolean appCds = false;
+
+    /**
+     * If true, packaged boot archive is launched once at build time, and list of loaded classes is embedded inside it: with 'appCds',
+     * class data sharing archive is then dumped before first launch, if JVM specification version is the same than the one running
+     * maven. Application must stop by itself with 'cdsTrainingArguments'.
+     */
+    @Parameter(property = "cdsTraining")
+    private Boolean cdsTraining = false;
+
+    /**
+     * Application arguments of training launch (like a probe argument which exercise application and exit), separated by spaces.
+     */
+    @Parameter(property = "cdsTrainingArguments")
+    private String cdsTrainingArguments = null;
+
+    /**
+     * JVM arguments of training launch, separated by spaces.
+     */
+    @Parameter(property = "cdsTrainingJvmArguments")
+    private String cdsTrainingJvmArguments = null;
+
+    /**
+     * Timeout of training launch in seconds (default 120).
+     */
+    @Parameter(property = "cdsTrainingTimeout")
+    private Integer cdsTrainingTimeout = 120;
+
+    /**
+     * If true, libraries are compressed again inside final archive. Per default is false: libraries are stored, so they can be
+     * memory mapped by bootstrap.
+     */
+    @Parameter(property = "recompressLibraries")
+    private Boolean recompressLibraries = false;
+
+    /**
+     * If true (default), an index of packages and resources path of each library is added to final archive (see
+     * {@link ClassPathIndex}).
+     */
+    @Parameter(property = "classPathIndex")
+    private Boolean classPathIndex = true;
+
+    /**
+     * If true (default), an ordered boot plan (main class, libraries and natives) is added to final archive, so bootstrap does not
+     * walk any directory on startup (see {@link BootPlan}).
+     */
+    @Parameter(property = "bootPlan")
+    private Boolean bootPlan = true;
+
+    /**
+     * Parameter for Bootstrap: true|false (default false) include archives of ${java.home}/lib on application class path.
+     */
+    @Parameter(property = "includeJavaHomeLib")
+    private Boolean includeJavaHomeLib = false;
+
+    /**
+     * Libraries file name copied into library directory, in class path order.
+     */
+    private final List<String> classPath = new ArrayList<>();
+
     /**
      * Parameter for Bootstrap: true|false (default false) activate 'verbose' mode
      */
@@ -160,6 +292,18 @@ public class BootStrapMojo extends AbstractMojo {
     @Parameter(property = "logFile")
     private String logFile = null;
 
+    /**
+     * Parameter for Bootstrap: true|false (default true) write log lines from a background thread
+     */
+    @Parameter(property = "asyncLog")
+    private Boolean asyncLog = true;
+
+    /**
+     * Parameter for Bootstrap: JSON file of startup timeline (default is none)
+     */
+    @Parameter(property = "timelineFile")
+    private String timelineFile = null;
+
     /**
      * Parameter for Bootstrap: explode Directory for inner jar. Default is current path location or temp directory if path is not
      * writable.
@@ -179,7 +323,8 @@ public class BootStrapMojo extends AbstractMojo {
     private String pluginVersion = "";
 
     /**
-     * List of native libraries path to add on final artifact (path could be a directory).
+     * List of native libraries path to add on final artifact (path could be a directory). Variants are added in "natives/{variant}",
+     * bootstrap load the best one supported by host, like "linux-x86_64-avx2", then "linux-x86_64", then baseline libraries.
      */
     @Parameter(alias = "natives")
     private PathSet natives = null;
@@ -236,6 +381,7 @@ public class BootStrapMojo extends AbstractMojo {
         if (!root.mkdirs()) {
             throw new MojoExecutionException("Cannot create output directory " + root.getName());
         }
+        classPath.clear();
         // write default plugin properties
         writeBootStrapProperties(root);
         // copy all runtime dependencies
@@ -246,6 +392,10 @@ public class BootStrapMojo extends AbstractMojo {
         copyNativeLibraries(libFile);
         // copy main artifact
         copyMainArtifact(root, libFile);
+        // index libraries
+        writeClassPathIndex(root, libFile);
+        // plan
+        writeBootPlan(root, libFile);
         // add class of org.intelligentsia.keystone:boot
         copyBootStrap(root);
         // package result
@@ -293,6 +443,10 @@ public class BootStrapMojo extends AbstractMojo {
         if (natives != null) {
             getLog().info("copy native libraries");
             copyLibraries(natives, nativeLib);
+            for (Map.Entry<String, String> variant : natives.getVariants().entrySet()) {
+                getLog().info("copy native libraries of variant " + variant.getKey());
+                copyPath(variant.getValue(), new File(new File(nativeLib, JniLoader.VARIANTS), variant.getKey()));
+            }
         }
     }
 
@@ -307,19 +461,31 @@ public class BootStrapMojo extends AbstractMojo {
     private void copyLibraries(PathSet pathSet, File destination) throws MojoExecutionException {
         if (pathSet != null) {
             for (String path : pathSet.getPaths()) {
-                File f = new File(path);
-                try {
-                    getLog().debug("copy " + path);
-                    if (f.isDirectory()) {
-                        getLog().info("copy " + f.getName());
-                        FileUtils.copyDirectory(f, destination);
-                    } else {
-                        FileUtils.copyFileToDirectory(f, destination);
-                    }
-                } catch (IOException e) {
-                    throw new MojoExecutionException("Error copying library " + path, e);
-                }
+                copyPath(path, destination);
+            }
+        }
+    }
+
+    /**
+     * Copy a path to destination folder (path can be a directory).
+     *
+     * @param path
+     * @param destination
+     *
+     * @throws MojoExecutionException
+     */
+    private void copyPath(String path, File destination) throws MojoExecutionException {
+        File f = new File(path);
+        try {
+            getLog().debug("copy " + path);
+            if (f.isDirectory()) {
+                getLog().info("copy " + f.getName());
+                FileUtils.copyDirectory(f, destination);
+            } else {
+                FileUtils.copyFileToDirectory(f, destination);
             }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error copying library " + path, e);
         }
     }
 
@@ -339,7 +505,7 @@ public class BootStrapMojo extends AbstractMojo {
             throw new MojoExecutionException("Cannot create libraries directory " + libDirectory.getName());
         }
         try {
-            final Set<Artifact> artifacts = new HashSet<Artifact>();
+            final Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
             // init filter
             final ArtifactFilter artifactFilter = new ScopeArtifactFilter(DefaultArtifact.SCOPE_COMPILE) {
                 @Override
@@ -366,6 +532,7 @@ public class BootStrapMojo extends AbstractMojo {
                 }
                 if (!explodeDependencies) {
                     FileUtils.copyFileToDirectory(artifact.getFile(), libDirectory);
+                    classPath.add(artifact.getFile().getName());
                 } else {
                     unArchiveArtifact(root, artifact.getFile());
                 }
@@ -418,6 +585,8 @@ public class BootStrapMojo extends AbstractMojo {
         try {
             if (!explodeDependencies) {
                 FileUtils.copyFileToDirectory(project.getArtifact().getFile(), libDirectory);
+                // project artifact comes first
+                classPath.add(0, project.getArtifact().getFile().getName());
             } else {
                 unArchiveArtifact(root, project.getArtifact().getFile());
             }
@@ -426,6 +595,98 @@ public class BootStrapMojo extends AbstractMojo {
         }
     }
 
+    /**
+     * Write index of libraries "META-INF/keystone.index"
+     *
+     * @param root         folder root
+     * @param libDirectory
+     *
+     * @throws MojoExecutionException
+     */
+    private void writeClassPathIndex(final File root, final File libDirectory) throws MojoExecutionException {
+        if (!classPathIndex || explodeDependencies) {
+            return;
+        }
+        getLog().info("write class path index");
+        final ClassPathIndex index = new ClassPathIndex();
+        final File[] files = libDirectory.listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+            for (final File file : files) {
+                if (file.isFile() && file.getName().endsWith(".jar")) {
+                    try {
+                        index.add(file);
+                    } catch (final IOException e) {
+                        throw new MojoExecutionException("Error indexing library " + file.getName(), e);
+                    }
+                }
+            }
+        }
+        final File indexFile = new File(root, ClassPathIndex.NAME);
+        try (FileOutputStream output = new FileOutputStream(indexFile)) {
+            index.write(output);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Error writing " + ClassPathIndex.NAME, e);
+        }
+    }
+
+    /**
+     * Write boot plan "META-INF/keystone.plan": project artifact, dependencies in resolution order, then others libraries of
+     * library directory sorted by path. All other files are natives libraries.
+     *
+     * @param root         folder root
+     * @param libDirectory
+     *
+     * @throws MojoExecutionException
+     */
+    private void writeBootPlan(final File root, final File libDirectory) throws MojoExecutionException {
+        if (!bootPlan) {
+            return;
+        }
+        getLog().info("write boot plan");
+        final BootPlan plan = new BootPlan();
+        plan.setMainClass(mainClass);
+        for (final String library : classPath) {
+            plan.addLibrary(library);
+        }
+        final List<String> files = new ArrayList<>();
+        listFiles(libDirectory, "", files);
+        Collections.sort(files);
+        for (final String path : files) {
+            if (path.endsWith(".jar")) {
+                plan.addLibrary(path);
+            } else {
+                plan.addNative(path);
+            }
+        }
+        final File planFile = new File(root, BootPlan.NAME);
+        try (FileOutputStream output = new FileOutputStream(planFile)) {
+            plan.write(output);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Error writing " + BootPlan.NAME, e);
+        }
+    }
+
+    /**
+     * Collect relative path of all files under specified directory.
+     *
+     * @param directory directory
+     * @param prefix    relative path of directory
+     * @param files     list to feed
+     */
+    private static void listFiles(final File directory, final String prefix, final List<String> files) {
+        final File[] children = directory.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                if (child.isDirectory()) {
+                    listFiles(child, prefix + child.getName() + "/", files);
+                } else {
+                    files.add(prefix + child.getName());
+                }
+            }
+        }
+    }
+
     /**
      * Write properties file "META-INF/keystone.properties"
      */
@@ -447,12 +708,36 @@ public class BootStrapMojo extends AbstractMojo {
         }
         properties.put("BootStrap.cleanUpLib", Boolean.toString(cleanUpLib));
         properties.put("BootStrap.cleanUpBeforeShutdown", Boolean.toString(cleanUpBeforeShutdown));
+        if (cleanUpBudget != null) {
+            properties.put("BootStrap.cleanUpBudget", Integer.toString(cleanUpBudget));
+        }
+        properties.put("BootStrap.includeJavaHomeLib", Boolean.toString(includeJavaHomeLib));
+        properties.put("BootStrap.extractionCache", Boolean.toString(extractionCache));
+        if (extractionThreads != null) {
+            properties.put("BootStrap.extractionThreads", Integer.toString(extractionThreads));
+        }
+        properties.put("BootStrap.sharedExtraction", Boolean.toString(sharedExtraction));
+        if (extractionMode != null && !"".equals(extractionMode)) {
+            properties.put("BootStrap.extractionMode", extractionMode);
+        }
+        if (extractionStore != null && !"".equals(extractionStore)) {
+            properties.put("BootStrap.extractionStore", extractionStore);
+        }
+        if (preloadLibraries != null && !"".equals(preloadLibraries)) {
+            properties.put("BootStrap.preloadLibraries", preloadLibraries);
+        }
+        properties.put("BootStrap.nativeFilter", Boolean.toString(nativeFilter));
+        properties.put("BootStrap.appCds", Boolean.toString(appCds));
         // log
         properties.put("BootStrap.verbose", Boolean.toString(verbose));
         properties.put("BootStrap.info", Boolean.toString(info));
+        properties.put("BootStrap.asyncLog", Boolean.toString(asyncLog));
         if (logFile != null) {
             properties.put("BootStrap.logFile", logFile);
         }
+        if (timelineFile != null) {
+            properties.put("BootStrap.timelineFile", timelineFile);
+        }
 
         // JVM Version
         if (minimalJvmVersion != null) {
@@ -485,6 +770,37 @@ public class BootStrapMojo extends AbstractMojo {
         }
     }
 
+    /**
+     * Run training launch of boot archive, and embed class list.
+     *
+     * @param custFile boot archive
+     *
+     * @throws MojoExecutionException if training fails
+     */
+    private void trainClassDataSharing(final File custFile) throws MojoExecutionException {
+        getLog().info("class data sharing training: " + custFile.getName());
+        try {
+            final int classes = CdsTraining.train(custFile, new File(buildDirectory, "cds-training"), split(cdsTrainingJvmArguments),
+                    split(cdsTrainingArguments), cdsTrainingTimeout);
+            getLog().info("class data sharing training: " + classes + " classes");
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Class data sharing training failed: " + e.getMessage(), e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Class data sharing training interrupted", e);
+        }
+    }
+
+    /**
+     * @return arguments separated by spaces.
+     */
+    private static List<String> split(final String arguments) {
+        if (arguments == null || arguments.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(arguments.trim().split("\\s+"));
+    }
+
     /**
      * package application and add artifact into project.
      *
@@ -501,6 +817,8 @@ public class BootStrapMojo extends AbstractMojo {
         // archive.setAddMavenDescriptor(false);
         final MavenArchiver archiver = new MavenArchiver();
         archiver.setArchiver(jarArchiver);
+        // inner jar are ever compressed
+        jarArchiver.setRecompressAddedZips(recompressLibraries);
         archiver.setOutputFile(custFile);
         try {
             jarArchiver.setManifest(new File(new File(root, "META-INF"), "MANIFEST.MF"));
@@ -513,11 +831,27 @@ public class BootStrapMojo extends AbstractMojo {
             }
             // create archive
             archiver.createArchive(project, archive);
+            if (cdsTraining) {
+                trainClassDataSharing(custFile);
+            }
             // add an other artifact in current project
             final Artifact artifact = artifactFactory.createArtifact(project.getGroupId(), project.getArtifactId() + "-boot",
                     project.getVersion(), Artifact.SCOPE_COMPILE, "jar");
             artifact.setFile(custFile);
             project.addAttachedArtifact(artifact);
+            // an archive by platform
+            if (platforms != null) {
+                for (final String platform : platforms) {
+                    final File platformFile = new File(buildDirectory,
+                            archiveName.replaceFirst("(\\.jar)?$", "-" + platform + ".jar"));
+                    final int removed = PlatformArchive.write(custFile, platformFile, platform);
+                    getLog().info("package boot: " + platformFile.getName() + " (" + removed + " entries of other platforms removed)");
+                    final Artifact platformArtifact = artifactFactory.createArtifactWithClassifier(project.getGroupId(),
+                            project.getArtifactId() + "-boot", project.getVersion(), "jar", platform);
+                    platformArtifact.setFile(platformFile);
+                    project.addAttachedArtifact(platformArtifact);
+                }
+            }
         } catch (final ArchiverException e) {
             throw new MojoExecutionException("Exception while packaging", e);
         } catch (final ManifestException e) {
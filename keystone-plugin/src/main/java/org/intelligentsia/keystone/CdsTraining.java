@@ -0,0 +1,169 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.intelligentsia.keystone.boot.AppCds;
+
+/**
+ * CdsTraining run a training launch of a boot archive, and embed list of loaded classes inside it (see {@link AppCds#CLASS_LIST}),
+ * with JVM which has run training (see {@link AppCds#DESCRIPTOR}).
+ *
+ * Application must stop by itself: training arguments are given to application (like a "--warmup" probe argument which exercise
+ * application and exit). A class data sharing archive is not embedded: it validates size and date of boot archive, which change when
+ * class list is added, and home directory of deployed application. Class list is portable, and archive is dumped from it on first
+ * launch (see {@link AppCds}).
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class CdsTraining {
+
+    private CdsTraining() {
+        super();
+    }
+
+    /**
+     * Run training launch and embed class list.
+     *
+     * @param archive boot archive
+     * @param directory working directory of training
+     * @param jvmArguments JVM arguments of training
+     * @param arguments application arguments of training
+     * @param timeout timeout in seconds
+     * @return number of classes in class list.
+     * @throws IOException if training fails
+     * @throws InterruptedException if interrupted
+     */
+    public static int train(final File archive, final File directory, final List<String> jvmArguments, final List<String> arguments,
+            final long timeout) throws IOException, InterruptedException {
+        // home directory must exist, else bootstrap explode in a new temporary directory
+        final File home = new File(directory, "home");
+        Files.createDirectories(home.toPath());
+        final File log = new File(directory, "class-load.log");
+        try {
+            final Process process = new ProcessBuilder(CdsTraining.command(archive, home, log, jvmArguments, arguments))
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            process.getOutputStream().close();
+            if (!process.waitFor(timeout, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("Training has not stopped after " + timeout + "s");
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("Training exit with code " + process.exitValue());
+            }
+        } finally {
+            FileUtils.deleteDirectory(home);
+        }
+        final List<String> classes = CdsTraining.parse(Files.readAllLines(log.toPath(), StandardCharsets.UTF_8));
+        final Properties descriptor = new Properties();
+        descriptor.setProperty("java.specification.version", System.getProperty("java.specification.version"));
+        descriptor.setProperty("java.vm.version", System.getProperty("java.vm.version"));
+        descriptor.setProperty("classes", Integer.toString(classes.size()));
+        CdsTraining.embed(archive, classes, descriptor);
+        return classes.size();
+    }
+
+    /**
+     * @return command of training launch, with JVM running this plugin.
+     */
+    static List<String> command(final File archive, final File home, final File log, final List<String> jvmArguments,
+            final List<String> arguments) {
+        final List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(jvmArguments);
+        command.add("-Xlog:class+load=info:file=" + log.getPath() + ":none");
+        command.add("-jar");
+        command.add(archive.getPath());
+        command.add("--BootStrap.explodeDirectory=" + home.getPath());
+        command.add("--BootStrap.appCds=false");
+        command.addAll(arguments);
+        return command;
+    }
+
+    /**
+     * Parse a class loading log ("-Xlog:class+load" without decorations): classes of base class data sharing archive, generated and
+     * hidden classes are ignored.
+     *
+     * @param lines log lines
+     * @return class names, in loading order.
+     */
+    static List<String> parse(final List<String> lines) {
+        final Set<String> classes = new LinkedHashSet<>();
+        for (final String line : lines) {
+            final int index = line.indexOf(" source: ");
+            if (index <= 0) {
+                continue;
+            }
+            final String name = line.substring(0, index).trim();
+            final String source = line.substring(index + " source: ".length());
+            if (name.indexOf('/') >= 0 || name.contains("$$") || source.startsWith("__") || source.startsWith("shared objects file")) {
+                continue;
+            }
+            classes.add(name);
+        }
+        return new ArrayList<>(classes);
+    }
+
+    /**
+     * Add (or replace) class list and descriptor to archive.
+     *
+     * @param archive boot archive
+     * @param classes class names
+     * @param descriptor training properties
+     * @throws IOException if an error occurs
+     */
+    static void embed(final File archive, final List<String> classes, final Properties descriptor) throws IOException {
+        final File temp = new File(archive.getPath() + ".tmp");
+        final byte[] buffer = new byte[64 * 1024];
+        try (ZipFile zip = new ZipFile(archive); ZipOutputStream output = new ZipOutputStream(new FileOutputStream(temp))) {
+            for (final ZipEntry entry : Collections.list(zip.entries())) {
+                if (!AppCds.CLASS_LIST.equals(entry.getName()) && !AppCds.DESCRIPTOR.equals(entry.getName())) {
+                    PlatformArchive.copy(zip, entry, output, buffer);
+                }
+            }
+            output.putNextEntry(new ZipEntry(AppCds.CLASS_LIST));
+            for (final String name : classes) {
+                output.write((name + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            output.closeEntry();
+            output.putNextEntry(new ZipEntry(AppCds.DESCRIPTOR));
+            descriptor.store(output, "class data sharing training");
+            output.closeEntry();
+        }
+        Files.move(temp.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -24,7 +24,9 @@ package org.intelligentsia.keystone;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * PathSet is a list of path..
@@ -45,6 +47,12 @@ public class PathSet implements Serializable {
      */
 	private List<String> paths;
 
+	 /**
+     * Path by variant name (like "linux-x86_64-avx2").
+     * @parameter
+     */
+	private Map<String, String> variants;
+
 	/**
 	 * Build a new instance of PathSet.
 	 */
@@ -86,4 +94,22 @@ public class PathSet implements Serializable {
 		this.paths = paths;
 	}
 
+    /**
+     * @return a Map of path by variant name.
+     */
+	public Map<String, String> getVariants() {
+		if (variants == null) {
+			variants = new LinkedHashMap<String, String>();
+		}
+		return variants;
+	}
+
+    /**
+     * Set path by variant name.
+     * @param variants
+     */
+	public void setVariants(Map<String, String> variants) {
+		this.variants = variants;
+	}
+
 }
@@ -0,0 +1,136 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.intelligentsia.keystone.boot.BootPlan;
+import org.intelligentsia.keystone.boot.JniLoader;
+
+/**
+ * PlatformArchive write a copy of a boot archive for a single platform (like "linux-x86_64"): native libraries and variants of other
+ * platforms are removed (see {@link JniLoader#isPlatform(String, String)}), and boot plan is updated. Other entries are copied as is,
+ * stored libraries stay stored.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public final class PlatformArchive {
+
+    /**
+     * Places of libraries inside archive.
+     */
+    private static final String[] PLACES = { "META-INF/lib/", "lib/" };
+
+    private PlatformArchive() {
+        super();
+    }
+
+    /**
+     * Write archive of a platform.
+     *
+     * @param source boot archive
+     * @param target platform archive to write
+     * @param platform platform
+     * @return number of removed entries.
+     * @throws IOException if an error occurs
+     */
+    public static int write(final File source, final File target, final String platform) throws IOException {
+        int removed = 0;
+        final byte[] buffer = new byte[64 * 1024];
+        try (ZipFile zip = new ZipFile(source); ZipOutputStream output = new ZipOutputStream(new FileOutputStream(target))) {
+            for (final ZipEntry entry : Collections.list(zip.entries())) {
+                if (!PlatformArchive.isPlatform(entry.getName(), platform)) {
+                    removed++;
+                    continue;
+                }
+                if (BootPlan.NAME.equals(entry.getName())) {
+                    output.putNextEntry(new ZipEntry(entry.getName()));
+                    output.write(PlatformArchive.plan(zip, entry, platform));
+                    output.closeEntry();
+                    continue;
+                }
+                PlatformArchive.copy(zip, entry, output, buffer);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Copy an entry as is: stored entries stay stored.
+     */
+    static void copy(final ZipFile zip, final ZipEntry entry, final ZipOutputStream output, final byte[] buffer) throws IOException {
+        final ZipEntry copy = new ZipEntry(entry);
+        if (copy.getMethod() != ZipEntry.STORED) {
+            // compressed again
+            copy.setCompressedSize(-1);
+        }
+        output.putNextEntry(copy);
+        try (InputStream input = zip.getInputStream(entry)) {
+            int count;
+            while ((count = input.read(buffer)) >= 0) {
+                output.write(buffer, 0, count);
+            }
+        }
+        output.closeEntry();
+    }
+
+    /**
+     * @return false if specified archive entry is a library useless on platform.
+     */
+    static boolean isPlatform(final String name, final String platform) {
+        for (final String place : PlatformArchive.PLACES) {
+            if (name.startsWith(place)) {
+                return JniLoader.isPlatform(name.substring(place.length()), platform);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return boot plan without natives of other platforms.
+     */
+    private static byte[] plan(final ZipFile zip, final ZipEntry entry, final String platform) throws IOException {
+        final BootPlan plan;
+        try (InputStream input = zip.getInputStream(entry)) {
+            plan = BootPlan.read(input);
+        }
+        final BootPlan result = new BootPlan();
+        result.setMainClass(plan.getMainClass());
+        for (final String library : plan.getLibraries()) {
+            result.addLibrary(library);
+        }
+        for (final String path : plan.getNatives()) {
+            if (JniLoader.isPlatform(path, platform)) {
+                result.addNative(path);
+            }
+        }
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        result.write(output);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.intelligentsia.keystone.boot.Probe;
+
+/**
+ * StartupBenchMojo measure end to end startup of a packaged keystone archive.
+ *
+ * Archive is forked several times with {@link Probe} as main class: each run is timed from process creation up to the readiness
+ * marker printed by probe, so it includes JVM startup, extraction, class path computation and class loader creation. Runs are done
+ * in 'cold' mode (home directory is cleaned before each run) and in 'warm' mode (extraction cache of a previous run is kept).
+ *
+ * Build fail if 90th percentile of a mode exceed its budget.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+@Mojo(name = "startup-bench", defaultPhase = LifecyclePhase.VERIFY)
+public class StartupBenchMojo extends AbstractMojo {
+
+    /**
+     * Archive to benchmark, default is archive built by goal 'custom' with its default final name.
+     */
+    @Parameter(property = "startupBench.archive", defaultValue = "${project.build.directory}/${project.build.finalName}-boot.jar")
+    private File archive;
+
+    @Parameter(defaultValue = "${project.build.directory}")
+    private File buildDirectory;
+
+    /**
+     * Main class of application, loaded by probe before readiness marker (optional).
+     */
+    @Parameter(property = "mainClass")
+    private String mainClass = null;
+
+    /**
+     * Number of measured runs of each mode (default 10).
+     */
+    @Parameter(property = "startupBench.runs")
+    private Integer runs = 10;
+
+    /**
+     * true|false (default true) measure startup with a cleaned home directory.
+     */
+    @Parameter(property = "startupBench.cold")
+    private Boolean cold = true;
+
+    /**
+     * true|false (default true) measure startup with extraction cache of a previous run.
+     */
+    @Parameter(property = "startupBench.warm")
+    private Boolean warm = true;
+
+    /**
+     * Maximum 90th percentile of cold startup, in milliseconds (default is none).
+     */
+    @Parameter(property = "startupBench.coldBudget")
+    private Long coldBudget = null;
+
+    /**
+     * Maximum 90th percentile of warm startup, in milliseconds (default is none).
+     */
+    @Parameter(property = "startupBench.warmBudget")
+    private Long warmBudget = null;
+
+    /**
+     * Options of forked JVM.
+     */
+    @Parameter
+    private List<String> jvmArguments = new ArrayList<>();
+
+    /**
+     * Maximum duration of a run, in milliseconds (default 60000).
+     */
+    @Parameter(property = "startupBench.timeout")
+    private Long timeout = 60000L;
+
+    /**
+     * Skip this goal.
+     */
+    @Parameter(property = "startupBench.skip")
+    private Boolean skip = false;
+
+    /**
+     * {@inheritDoc}
+     */
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Startup benchmark skipped");
+            return;
+        }
+        if (archive == null || !archive.isFile()) {
+            throw new MojoExecutionException("Archive not found: " + archive);
+        }
+        if (runs < 1) {
+            throw new MojoExecutionException("Number of runs must be positive: " + runs);
+        }
+        getLog().info("Startup benchmark of " + archive.getName());
+        final File home = new File(new File(buildDirectory, "startup-bench"), "home");
+        final List<String> failures = new ArrayList<>();
+        if (cold) {
+            final long[] durations = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                StartupBenchMojo.prepare(home);
+                durations[i] = run(home, false);
+            }
+            report("cold", durations, coldBudget, failures);
+        }
+        if (warm) {
+            StartupBenchMojo.prepare(home);
+            // first run fill extraction cache
+            run(home, true);
+            final long[] durations = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                durations[i] = run(home, true);
+            }
+            report("warm", durations, warmBudget, failures);
+        }
+        StartupBenchMojo.delete(home);
+        if (!failures.isEmpty()) {
+            throw new MojoFailureException("Startup budget exceeded: " + failures);
+        }
+    }
+
+    /**
+     * Fork archive once.
+     *
+     * @param home home directory
+     * @param cache if true, extraction cache is kept on shutdown
+     * @return duration in milliseconds from process creation up to readiness marker.
+     * @throws MojoExecutionException if process fail or do not print readiness marker.
+     */
+    long run(final File home, final boolean cache) throws MojoExecutionException {
+        final List<String> command = command(home, cache);
+        getLog().debug("run " + command);
+        final ProcessBuilder builder = new ProcessBuilder(command).directory(buildDirectory).redirectErrorStream(true);
+        final long start = System.nanoTime();
+        final Process process;
+        try {
+            process = builder.start();
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unable to start " + command, e);
+        }
+        final AtomicLong duration = new AtomicLong(-1);
+        final StringBuffer output = new StringBuffer();
+        final Thread reader = new Thread(() -> {
+            try (BufferedReader input = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.defaultCharset()))) {
+                String line;
+                while ((line = input.readLine()) != null) {
+                    if (duration.get() < 0 && Probe.MARKER.equals(line.trim())) {
+                        duration.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    } else {
+                        output.append(line).append('\n');
+                    }
+                }
+            } catch (final IOException e) {
+                output.append(e.getMessage());
+            }
+        }, "startup-bench-output");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            if (!process.waitFor(timeout, TimeUnit.MILLISECONDS)) {
+                throw new MojoExecutionException("Startup timeout exceeded (" + timeout + " ms)");
+            }
+            reader.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Startup benchmark interrupted", e);
+        } finally {
+            process.destroyForcibly();
+        }
+        if (duration.get() < 0) {
+            throw new MojoExecutionException("Readiness marker not found, exit code " + process.exitValue() + ":\n" + output);
+        }
+        return duration.get();
+    }
+
+    /**
+     * @param home home directory
+     * @param cache if true, extraction cache is kept on shutdown
+     * @return command line of a run.
+     */
+    List<String> command(final File home, final boolean cache) {
+        final List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(jvmArguments);
+        command.addAll(Arrays.asList("-jar", archive.getAbsolutePath(), "--Main-Class=" + Probe.class.getName(),
+                "--BootStrap.explodeDirectory=" + home.getAbsolutePath(), "--BootStrap.cleanUpBeforeShutdown=false",
+                "--BootStrap.extractionCache=" + cache));
+        if (mainClass != null) {
+            command.add("--Probe.mainClass=" + mainClass);
+        }
+        return command;
+    }
+
+    /**
+     * Log statistics of a mode and check its budget.
+     *
+     * @param mode mode name
+     * @param durations durations in milliseconds
+     * @param budget maximum 90th percentile (can be null)
+     * @param failures list of budget failures
+     */
+    void report(final String mode, final long[] durations, final Long budget, final List<String> failures) {
+        final long[] sorted = durations.clone();
+        Arrays.sort(sorted);
+        final long p90 = StartupBenchMojo.percentile(sorted, 90);
+        getLog().info(mode + " startup (" + sorted.length + " runs): p50=" + StartupBenchMojo.percentile(sorted, 50) + " ms, p90=" + p90
+                + " ms, max=" + sorted[sorted.length - 1] + " ms" + (budget != null ? ", budget=" + budget + " ms" : ""));
+        if (budget != null && p90 > budget) {
+            failures.add(mode + " p90 " + p90 + " ms > " + budget + " ms");
+        }
+    }
+
+    /**
+     * Nearest rank percentile.
+     *
+     * @param sorted sorted values
+     * @param percentile percentile (1 to 100)
+     * @return value of specified percentile.
+     */
+    static long percentile(final long[] sorted, final int percentile) {
+        final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * Clean home directory: it must exist, else bootstrap use a new temporary directory on each run.
+     *
+     * @param home home directory
+     * @throws MojoExecutionException if home directory cannot be created
+     */
+    static void prepare(final File home) throws MojoExecutionException {
+        StartupBenchMojo.delete(home);
+        try {
+            Files.createDirectories(home.toPath());
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unable to create " + home, e);
+        }
+    }
+
+    /**
+     * Utility to delete file (directory or single file)
+     *
+     * @param from
+     */
+    private static void delete(final File from) {
+        if ((from != null) && from.exists()) {
+            if (from.isDirectory()) {
+                for (final File child : from.listFiles()) {
+                    StartupBenchMojo.delete(child);
+                }
+            }
+            from.delete();
+        }
+    }
+}
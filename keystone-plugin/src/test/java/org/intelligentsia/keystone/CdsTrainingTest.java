@@ -0,0 +1,78 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.intelligentsia.keystone.boot.AppCds;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test on {@link CdsTraining}.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class CdsTrainingTest {
+
+    @Test
+    public void parseClassLoadingLog() {
+        Assert.assertEquals(Arrays.asList("org.intelligentsia.keystone.boot.BootStrap", "demo.Main", "java.sql.Driver"),
+                CdsTraining.parse(Arrays.asList("java.lang.Object source: shared objects file",
+                        "org.intelligentsia.keystone.boot.BootStrap source: file:/tmp/demo-boot.jar",
+                        "demo.Main source: file:/tmp/home/lib/demo.jar", "demo.Main$$Lambda$14/0x0000000800c03000 source: demo.Main",
+                        "jdk.internal.reflect.GeneratedMethodAccessor1 source: __JVM_DefineClass__", "java.sql.Driver source: jrt:/java.sql",
+                        "demo.Main source: file:/tmp/home/lib/demo.jar", "[0.010s] unrelated")));
+    }
+
+    @Test
+    public void embedReplaceClassList() throws IOException {
+        final File directory = new File("target");
+        directory.mkdirs();
+        final File archive = new File(directory, "training-boot.jar");
+        try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(archive))) {
+            for (final String name : Arrays.asList("META-INF/lib/a.jar", AppCds.CLASS_LIST)) {
+                output.putNextEntry(new ZipEntry(name));
+                output.write(name.getBytes("UTF-8"));
+                output.closeEntry();
+            }
+        }
+        final Properties descriptor = new Properties();
+        descriptor.setProperty("java.specification.version", "17");
+        CdsTraining.embed(archive, Arrays.asList("demo.Main", "demo.Service"), descriptor);
+        try (ZipFile zip = new ZipFile(archive)) {
+            Assert.assertEquals(3, zip.size());
+            Assert.assertNotNull(zip.getEntry("META-INF/lib/a.jar"));
+            final byte[] classes = new byte[64];
+            final int count = zip.getInputStream(zip.getEntry(AppCds.CLASS_LIST)).read(classes);
+            Assert.assertEquals("demo.Main\ndemo.Service\n", new String(classes, 0, count, "UTF-8"));
+            final Properties read = new Properties();
+            read.load(zip.getInputStream(zip.getEntry(AppCds.DESCRIPTOR)));
+            Assert.assertEquals("17", read.getProperty("java.specification.version"));
+        }
+    }
+}
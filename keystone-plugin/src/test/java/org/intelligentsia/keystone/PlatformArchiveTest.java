@@ -0,0 +1,82 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.intelligentsia.keystone.boot.BootPlan;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test on {@link PlatformArchive}.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class PlatformArchiveTest {
+
+    @Test
+    public void removeNativesOfOtherPlatforms() throws IOException {
+        final File directory = new File("target");
+        directory.mkdirs();
+        final File source = new File(directory, "platform-boot.jar");
+        final BootPlan plan = new BootPlan();
+        plan.addLibrary("a.jar");
+        plan.addNative("libx.so");
+        plan.addNative("x.dll");
+        plan.addNative("natives/linux-x86_64-avx2/libx.so");
+        plan.addNative("natives/linux-aarch64/libx.so");
+        try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(source))) {
+            for (final String name : Arrays.asList("META-INF/lib/a.jar", "META-INF/lib/libx.so", "META-INF/lib/x.dll",
+                    "META-INF/lib/libx.dylib", "META-INF/lib/natives/linux-x86_64-avx2/libx.so",
+                    "META-INF/lib/natives/linux-aarch64/libx.so", "org/intelligentsia/keystone/boot/BootStrap.class")) {
+                output.putNextEntry(new ZipEntry(name));
+                output.write(name.getBytes("UTF-8"));
+                output.closeEntry();
+            }
+            output.putNextEntry(new ZipEntry(BootPlan.NAME));
+            plan.write(output);
+            output.closeEntry();
+        }
+        final File target = new File(directory, "platform-boot-linux-x86_64.jar");
+        Assert.assertEquals(3, PlatformArchive.write(source, target, "linux-x86_64"));
+        try (ZipFile zip = new ZipFile(target)) {
+            final List<String> names = new ArrayList<>();
+            for (final ZipEntry entry : Collections.list(zip.entries())) {
+                names.add(entry.getName());
+            }
+            Assert.assertEquals(Arrays.asList("META-INF/lib/a.jar", "META-INF/lib/libx.so",
+                    "META-INF/lib/natives/linux-x86_64-avx2/libx.so", "org/intelligentsia/keystone/boot/BootStrap.class", BootPlan.NAME),
+                    names);
+            final BootPlan read = BootPlan.read(zip.getInputStream(zip.getEntry(BootPlan.NAME)));
+            Assert.assertEquals(Arrays.asList("libx.so", "natives/linux-x86_64-avx2/libx.so"), read.getNatives());
+            Assert.assertEquals(Arrays.asList("a.jar"), read.getLibraries());
+        }
+    }
+}
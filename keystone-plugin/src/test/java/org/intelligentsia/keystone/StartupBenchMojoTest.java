@@ -0,0 +1,148 @@
+/**
+ *        Licensed to the Apache Software Foundation (ASF) under one
+ *        or more contributor license agreements.  See the NOTICE file
+ *        distributed with this work for additional information
+ *        regarding copyright ownership.  The ASF licenses this file
+ *        to you under the Apache License, Version 2.0 (the
+ *        "License"); you may not use this file except in compliance
+ *        with the License.  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *        Unless required by applicable law or agreed to in writing,
+ *        software distributed under the License is distributed on an
+ *        "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *        KIND, either express or implied.  See the License for the
+ *        specific language governing permissions and limitations
+ *        under the License.
+ *
+ */
+package org.intelligentsia.keystone;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.intelligentsia.keystone.boot.BootStrap;
+import org.intelligentsia.keystone.boot.ExtractionCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test on {@link StartupBenchMojo}.
+ *
+ * @author <a href="mailto:jguibert@intelligents-ia.com" >Jerome Guibert</a>
+ */
+public class StartupBenchMojoTest {
+
+    @Test
+    public void checkPercentile() {
+        final long[] sorted = { 10, 20, 30, 40, 50, 60, 70, 80, 90, 100 };
+        Assert.assertEquals(50, StartupBenchMojo.percentile(sorted, 50));
+        Assert.assertEquals(90, StartupBenchMojo.percentile(sorted, 90));
+        Assert.assertEquals(100, StartupBenchMojo.percentile(sorted, 100));
+        Assert.assertEquals(7, StartupBenchMojo.percentile(new long[] { 7 }, 90));
+    }
+
+    @Test
+    public void checkBudget() {
+        final StartupBenchMojo mojo = new StartupBenchMojo();
+        final List<String> failures = new ArrayList<>();
+        final long[] durations = { 300, 100, 200 };
+        mojo.report("cold", durations, null, failures);
+        mojo.report("cold", durations, 300L, failures);
+        Assert.assertTrue(failures.isEmpty());
+        mojo.report("warm", durations, 299L, failures);
+        Assert.assertEquals(1, failures.size());
+        Assert.assertTrue(failures.get(0).startsWith("warm"));
+    }
+
+    @Test
+    public void warmRunsKeepExtractionCache() throws Exception {
+        final File directory = new File("target", "startup-bench-test");
+        final File archive = new File(directory, "bench-boot.jar");
+        final File home = new File(directory, "home");
+        StartupBenchMojo.prepare(directory);
+        StartupBenchMojoTest.writeBootArchive(archive);
+        final StartupBenchMojo mojo = new StartupBenchMojo();
+        StartupBenchMojoTest.set(mojo, "archive", archive);
+        StartupBenchMojoTest.set(mojo, "buildDirectory", directory);
+        StartupBenchMojo.prepare(home);
+        mojo.run(home, true);
+        final File stamp = new File(new File(home, "lib"), ExtractionCache.STAMP);
+        Assert.assertTrue(stamp.isFile());
+        final long modified = stamp.lastModified();
+        mojo.run(home, true);
+        // nothing extracted again
+        Assert.assertTrue(stamp.isFile());
+        Assert.assertEquals(modified, stamp.lastModified());
+    }
+
+    private static void set(final StartupBenchMojo mojo, final String name, final Object value) throws ReflectiveOperationException {
+        final Field field = StartupBenchMojo.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+
+    /**
+     * Write a boot archive with bootstrap classes and a library.
+     */
+    private static void writeBootArchive(final File archive) throws IOException, URISyntaxException, MojoExecutionException {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, BootStrap.class.getName());
+        final File boot = new File(BootStrap.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        try (JarOutputStream output = new JarOutputStream(new FileOutputStream(archive), manifest)) {
+            if (boot.isDirectory()) {
+                try (Stream<Path> paths = Files.walk(boot.toPath())) {
+                    for (final Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                        final String name = boot.toPath().relativize(path).toString().replace(File.separatorChar, '/');
+                        if (name.endsWith(".class")) {
+                            output.putNextEntry(new JarEntry(name));
+                            Files.copy(path, output);
+                        }
+                    }
+                }
+            } else {
+                try (JarFile jar = new JarFile(boot)) {
+                    for (final JarEntry entry : Collections.list(jar.entries())) {
+                        if (entry.getName().endsWith(".class")) {
+                            output.putNextEntry(new JarEntry(entry.getName()));
+                            output.write(StartupBenchMojoTest.read(jar, entry));
+                        }
+                    }
+                }
+            }
+            output.putNextEntry(new JarEntry("META-INF/lib/library.txt"));
+            output.write("library".getBytes("UTF-8"));
+        }
+    }
+
+    private static byte[] read(final JarFile jar, final JarEntry entry) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        try (InputStream input = jar.getInputStream(entry)) {
+            int count;
+            while ((count = input.read(buffer)) >= 0) {
+                content.write(buffer, 0, count);
+            }
+        }
+        return content.toByteArray();
+    }
+}